@@ -0,0 +1,29 @@
+package org.ntnu.it3105.jmh;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and saves the results as CSV, one line per benchmark and parameter set, so the files of two builds can be
+ * compared with a plain diff. The file defaults to jmh-result.csv and is set with -DjmhResult. Regular JMH
+ * command line options, such as a benchmark name filter, are passed through.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        String resultFile = System.getProperty("jmhResult", "jmh-result.csv");
+
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .resultFormat(ResultFormatType.CSV)
+                .result(resultFile)
+                .build();
+
+        new Runner(options).run();
+    }
+}
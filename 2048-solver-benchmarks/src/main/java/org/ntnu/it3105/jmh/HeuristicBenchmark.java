@@ -0,0 +1,86 @@
+package org.ntnu.it3105.jmh;
+
+import org.ntnu.it3105.ai.HeuristicEvaluator;
+import org.ntnu.it3105.benchmark.BoardCorpus;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single heuristic evaluation on a corpus board, for both board representations
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HeuristicBenchmark {
+
+    private long[] packedBoards;
+    private int[][][] boards;
+    private int index;
+    private HeuristicEvaluator evaluator;
+
+    @Setup
+    public void setup() {
+        evaluator = new HeuristicEvaluator(0.0, 0.0, 1.3, 1.0, 0.0, 1.0, 1.0, 1.0, 1.0);
+        packedBoards = BoardCorpus.all();
+        boards = new int[packedBoards.length][][];
+        for (int i = 0; i < packedBoards.length; i++) {
+            boards[i] = BitBoard.toArray(packedBoards[i]);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) % packedBoards.length;
+        return index;
+    }
+
+    @Benchmark
+    public double arraySnakeValue() {
+        return Board.getSnakeValue(boards[next()]);
+    }
+
+    @Benchmark
+    public double arrayGradientValue() {
+        return Board.getGradientValue(boards[next()]);
+    }
+
+    @Benchmark
+    public double arrayHighestInCorner() {
+        return Board.highestInCorner(boards[next()]);
+    }
+
+    @Benchmark
+    public int arrayFreeCellCount() {
+        return Board.getFreeCellCount(boards[next()]);
+    }
+
+    @Benchmark
+    public double packedSnakeValue() {
+        return BitBoard.getSnakeValue(packedBoards[next()]);
+    }
+
+    @Benchmark
+    public double packedGradientValue() {
+        return BitBoard.getGradientValue(packedBoards[next()]);
+    }
+
+    @Benchmark
+    public double packedHighestInCorner() {
+        return BitBoard.highestInCorner(packedBoards[next()]);
+    }
+
+    @Benchmark
+    public int packedFreeCellCount() {
+        return BitBoard.getFreeCellCount(packedBoards[next()]);
+    }
+
+    @Benchmark
+    public double evaluatorLeaf() {
+        return evaluator.evaluate(packedBoards[next()]);
+    }
+}
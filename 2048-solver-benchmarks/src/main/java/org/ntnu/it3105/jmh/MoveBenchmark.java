@@ -0,0 +1,68 @@
+package org.ntnu.it3105.jmh;
+
+import org.ntnu.it3105.benchmark.BoardCorpus;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.ntnu.it3105.game.Direction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-move throughput of the packed and the int[][] board engines. One operation moves one corpus board in
+ * all four directions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveBenchmark {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private long[] packedBoards;
+    private int[][][] boards;
+    private int index;
+
+    @Setup
+    public void setup() {
+        packedBoards = BoardCorpus.all();
+        boards = new int[packedBoards.length][][];
+        for (int i = 0; i < packedBoards.length; i++) {
+            boards[i] = BitBoard.toArray(packedBoards[i]);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) % packedBoards.length;
+        return index;
+    }
+
+    @Benchmark
+    public void packedMove(Blackhole bh) {
+        long board = packedBoards[next()];
+        for (Direction direction : DIRECTIONS) {
+            bh.consume(BitBoard.move(board, direction));
+        }
+    }
+
+    @Benchmark
+    public void packedMoveWithScore(Blackhole bh) {
+        long board = packedBoards[next()];
+        for (Direction direction : DIRECTIONS) {
+            bh.consume(BitBoard.move(board, direction));
+            bh.consume(BitBoard.getMoveScore(board, direction));
+        }
+    }
+
+    @Benchmark
+    public void arrayMove(Blackhole bh) {
+        int[][] board = boards[next()];
+        for (Direction direction : DIRECTIONS) {
+            bh.consume(Board.move(board, direction));
+        }
+    }
+}
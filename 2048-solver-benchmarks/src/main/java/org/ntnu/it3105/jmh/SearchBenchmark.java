@@ -0,0 +1,66 @@
+package org.ntnu.it3105.jmh;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.benchmark.BoardCorpus;
+import org.ntnu.it3105.game.Direction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expectimax search at fixed depths on the mid game and late game corpus boards. One operation is one root
+ * search, and the nodes counter reports the searched nodes, so JMH prints nodes per second next to searches per second.
+ * The transposition table is disabled, otherwise every search after the first would be a cache hit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+    @Param({"2", "4", "6"})
+    public int depth;
+
+    @Param({"mid", "late"})
+    public String corpus;
+
+    private Expectimax solver;
+    private long[] boards;
+    private int index;
+
+    /**
+     * Exposes the number of searched nodes as a secondary JMH result
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        Logger.getRootLogger().setLevel(Level.WARN);
+        Expectimax.USE_TRANSPOSITION_TABLE = false;
+        Expectimax.MOVE_TIME_BUDGET = 0;
+        solver = new Expectimax(null, depth);
+        boards = "late".equals(corpus) ? BoardCorpus.lateGame() : BoardCorpus.midGame();
+    }
+
+    @TearDown
+    public void tearDown() {
+        solver.shutdown();
+    }
+
+    @Benchmark
+    public Direction search(Nodes counter) {
+        index = (index + 1) % boards.length;
+        long before = solver.getNodesSearched();
+        Direction direction = solver.getNextMove(boards[index], depth);
+        counter.nodes += solver.getNodesSearched() - before;
+        return direction;
+    }
+}
@@ -8,8 +8,12 @@ import javafx.stage.Stage;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.ai.MonteCarloSolver;
 import org.ntnu.it3105.game.Controller;
 import org.ntnu.it3105.game.Direction;
+import org.ntnu.it3105.server.AnnGameServer;
+import org.ntnu.it3105.simulation.HeadlessSimulator;
+import org.ntnu.it3105.simulation.StatisticsReport;
 import org.ntnu.it3105.utils.GameDataAppender;
 
 import static org.ntnu.it3105.ai.Expectimax.GAME_DATA_SCRAPER;
@@ -20,6 +24,9 @@ public class Main extends Application {
 
     public static boolean USE_GUI = Boolean.parseBoolean(System.getProperty("useGui", "false"));
     public static boolean USE_SOCKET = Boolean.parseBoolean(System.getProperty("useSocket", "true"));
+    public static boolean USE_HEADLESS = Boolean.parseBoolean(System.getProperty("headless", "false"));
+    public static boolean USE_NIO_SERVER = Boolean.parseBoolean(System.getProperty("nioServer", "true"));
+    public static String SOLVER = System.getProperty("solver", "expectimax");
 
     private static final Logger log = Logger.getLogger(Main.class);
 
@@ -37,8 +44,37 @@ public class Main extends Application {
             PropertyConfigurator.configure(getClass().getClassLoader().getResource("config/log4j.properties"));
             log.info("Starting 2048 Statistics Scrapper with " + NUMBER_OF_STATISTIC_RUNS + " runs");
 
+            if (USE_HEADLESS) {
+                // Plays the games in parallel without a Controller, see HeadlessSimulator
+                HeadlessSimulator simulator = new HeadlessSimulator(Expectimax.SEARCH_THREADS, 4);
+                simulator.run(NUMBER_OF_STATISTIC_RUNS, HeadlessSimulator.PARALLEL_GAMES, new StatisticsReport(StatisticsReport.LABEL))
+                        .write(StatisticsReport.OUTPUT);
+                simulator.shutdown();
+                return;
+            }
+
+            if (USE_SOCKET && USE_NIO_SERVER) {
+                // Serves any number of ANN clients at once, text clients on the old port, see AnnGameServer
+                try {
+                    new AnnGameServer(AnnGameServer.TEXT_PORT, AnnGameServer.BINARY_PORT, AnnGameServer.BATCH_PORT).run();
+                } catch (IOException e) {
+                    log.error("Could not start the ANN server: " + e.getMessage());
+                }
+                return;
+            }
+
             controller = new Controller();
             controller.initialize();
+
+            if (!USE_SOCKET && SOLVER.equalsIgnoreCase("montecarlo")) {
+                // Statistics of the playout solver, to compare against Expectimax
+                MonteCarloSolver monteCarloSolver = new MonteCarloSolver(controller);
+                monteCarloSolver.solveForStatistics();
+                monteCarloSolver.shutdown();
+                GameDataAppender.shutdown();
+                return;
+            }
+
             solver = new Expectimax(controller, 4);
 
             if (USE_SOCKET) {
@@ -46,6 +82,7 @@ public class Main extends Application {
             } else {
                 solver.solveForStatistics();
             }
+            GameDataAppender.shutdown();
         }
     }
 
@@ -109,6 +146,7 @@ public class Main extends Application {
         primaryStage.setOnCloseRequest(e -> {
             solver.shutdown();
             controller.shutdown();
+            GameDataAppender.shutdown();
         });
     }
 
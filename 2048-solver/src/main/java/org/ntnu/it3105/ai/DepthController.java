@@ -0,0 +1,136 @@
+package org.ntnu.it3105.ai;
+
+import org.apache.log4j.Logger;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Direction;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the search depth of every move from a target latency per move, instead of from free cell buckets.
+ * <p>
+ * The cost of a search to depth d is predicted as 4 * b^d nodes, one tree per root direction, divided by the
+ * recent node rate. The effective branching factor b per ply depends mostly on the free cells, taken as the
+ * most free cells left by any root move, since the trees below the root moves are what gets searched. It is
+ * learned per free cell count from the searches made: a search of n nodes to depth d observed
+ * b = (n / 4)^(1/d). Both b and the node rate are exponentially smoothed, starting from a prior of
+ * sqrt(2 * free cells * 3), a chance node and a max node per two plies. The deepest depth predicted to fit
+ * the target is searched, but at least depth 1.
+ * <p>
+ * Every move logs the predicted and the actual cost, and toString sums up how well the model did.
+ */
+public class DepthController {
+
+    private static final int ROOT_MOVES = 4;
+    private static final double SMOOTHING = 0.3;
+    private static final double INITIAL_NODES_PER_NANO = 0.002;
+
+    private static Logger log = Logger.getLogger(DepthController.class);
+
+    private final long targetNanos;
+    private final int maxDepth;
+
+    // Smoothed natural log of the effective branching factor per ply, by free cells after the root moves
+    private final double[] logBranching = new double[17];
+    private double nodesPerNano = INITIAL_NODES_PER_NANO;
+
+    // The prediction of the move in progress
+    private int depth;
+    private int freeCells;
+    private double predictedNodes;
+    private double predictedNanos;
+
+    private long moves;
+    private long withinTarget;
+    private double sumAbsoluteLogError;
+    private long sumNanos;
+
+    /**
+     * @param targetMillis The target search time per move
+     * @param maxDepth The deepest depth to search to
+     */
+    public DepthController(long targetMillis, int maxDepth) {
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.maxDepth = maxDepth;
+        for (int free = 0; free < logBranching.length; free++) {
+            logBranching[free] = 0.5 * Math.log(2.0 * Math.max(free, 1) * 3.0);
+        }
+    }
+
+    /**
+     * Predicts the cost of every depth for the board and picks the deepest that fits the target
+     * @param board The packed board to search from
+     * @return The depth to search every direction to
+     */
+    public synchronized int chooseDepth(long board) {
+        freeCells = 0;
+        for (Direction direction : Direction.values()) {
+            long movedBoard = BitBoard.move(board, direction);
+            if (movedBoard != board) {
+                freeCells = Math.max(freeCells, BitBoard.getFreeCellCount(movedBoard));
+            }
+        }
+        depth = 1;
+        for (int d = 2; d <= maxDepth; d++) {
+            if (predictNodes(freeCells, d) / nodesPerNano > targetNanos) {
+                break;
+            }
+            depth = d;
+        }
+        predictedNodes = predictNodes(freeCells, depth);
+        predictedNanos = predictedNodes / nodesPerNano;
+        return depth;
+    }
+
+    /**
+     * Updates the model with the cost of the search of the last chosen depth
+     * @param nodes The nodes searched
+     * @param nanos The time the search took
+     */
+    public synchronized void record(long nodes, long nanos) {
+        if (nodes > ROOT_MOVES && nanos > 0) {
+            double observed = Math.log((double) nodes / ROOT_MOVES) / depth;
+            logBranching[freeCells] += SMOOTHING * (observed - logBranching[freeCells]);
+            nodesPerNano += SMOOTHING * ((double) nodes / nanos - nodesPerNano);
+        }
+
+        moves++;
+        sumNanos += nanos;
+        if (nanos <= targetNanos) {
+            withinTarget++;
+        }
+        double error = Math.log(Math.max(nanos, 1L) / predictedNanos);
+        sumAbsoluteLogError += Math.abs(error);
+        // Every move, so not formatted unless asked for, the summary of toString is logged at info
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Depth %d with %d free cells: predicted %.2f ms (%.0f nodes), actual %.2f ms (%d nodes)",
+                    depth, freeCells, predictedNanos / 1e6, predictedNodes, nanos / 1e6, nodes));
+        }
+    }
+
+    private double predictNodes(int freeCells, int depth) {
+        return ROOT_MOVES * Math.exp(depth * logBranching[freeCells]);
+    }
+
+    /**
+     * Returns the geometric mean factor between predicted and actual time, 1 for a perfect model
+     */
+    public synchronized double getMeanErrorFactor() {
+        return moves == 0 ? 1.0 : Math.exp(sumAbsoluteLogError / moves);
+    }
+
+    /**
+     * Returns the share of moves searched within the target
+     */
+    public synchronized double getWithinTargetRate() {
+        return moves == 0 ? 0.0 : (double) withinTarget / moves;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("DepthController{target=%.1f ms, moves=%d, meanMillis=%.2f, withinTarget=%.1f%%, "
+                        + "meanErrorFactor=%.2f, nodesPerSecond=%.0f}", targetNanos / 1e6, moves,
+                moves == 0 ? 0.0 : sumNanos / 1e6 / moves, 100 * getWithinTargetRate(), getMeanErrorFactor(),
+                nodesPerNano * 1e9);
+    }
+}
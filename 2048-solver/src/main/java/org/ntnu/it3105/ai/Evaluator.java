@@ -0,0 +1,39 @@
+package org.ntnu.it3105.ai;
+
+/**
+ * Evaluates the leaves of the Expectimax search.
+ * <p>
+ * The search keeps 0 as the value of a max node without moves, so evaluations should be positive for boards
+ * that are still in play. Implementations are called concurrently by all search threads, and must not keep
+ * state between calls.
+ */
+@FunctionalInterface
+public interface Evaluator {
+
+    /**
+     * Evaluates a leaf board
+     * @param board The packed board
+     * @return The heuristic value
+     */
+    double evaluate(long board);
+
+    /**
+     * Returns whether boards that are rotations or reflections of each other always evaluate equally, which the
+     * symmetric transposition table relies on
+     */
+    default boolean isSymmetric() {
+        return false;
+    }
+
+    /**
+     * Returns an upper bound on the evaluation of every board reachable from a board in a number of moves and
+     * their spawns, which the Star1 chance node pruning of Expectimax relies on. It must never be below an
+     * evaluation it bounds, and the tighter it is the more the search prunes. Infinity turns the pruning off.
+     * @param board The packed board
+     * @param moves The number of moves made before the leaves
+     * @return The bound
+     */
+    default double getUpperBound(long board, int moves) {
+        return Double.POSITIVE_INFINITY;
+    }
+}
@@ -1,22 +1,26 @@
 package org.ntnu.it3105.ai;
 
-import javafx.application.Platform;
 import org.apache.log4j.Logger;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.ntnu.it3105.game.BoardSymmetry;
 import org.ntnu.it3105.game.Controller;
 import org.ntnu.it3105.game.Direction;
+import org.ntnu.it3105.simulation.GameResult;
+import org.ntnu.it3105.simulation.StatisticsReport;
 import org.ntnu.it3105.utils.GameDataAppender;
 
 import java.io.*;
 import java.net.Socket;
 import java.net.SocketException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.net.ServerSocket;
 
-import static org.ntnu.it3105.game.Board.*;
+import static org.ntnu.it3105.game.BitBoard.*;
 
 
 /**
@@ -26,66 +30,294 @@ import static org.ntnu.it3105.game.Board.*;
 public class Expectimax implements Solver {
 
     public static boolean GAME_DATA_SCRAPER = Boolean.parseBoolean(System.getProperty("dataScraper", "true"));
-    private static long GUI_UPDATE_DELAY = 0L;
+    private static long GUI_UPDATE_DELAY = Long.parseLong(System.getProperty("guiUpdateDelay", "0"));
     public static int NUMBER_OF_STATISTICS_RUNS = Integer.parseInt(System.getProperty("maxRuns", "200"));
+    public static boolean USE_TRANSPOSITION_TABLE = Boolean.parseBoolean(System.getProperty("transpositionTable", "true"));
+    public static int TRANSPOSITION_TABLE_SIZE_BITS = Integer.parseInt(System.getProperty("ttSizeBits", "20"));
+    public static TranspositionTable.ReplacementPolicy TRANSPOSITION_TABLE_POLICY =
+            TranspositionTable.ReplacementPolicy.valueOf(System.getProperty("ttPolicy", "DEPTH_PREFERRED"));
+    public static boolean TT_SYMMETRY = Boolean.parseBoolean(System.getProperty("ttSymmetry", "false"));
+    public static long MOVE_TIME_BUDGET = Long.parseLong(System.getProperty("moveTimeBudget", "0"));
+    public static long TARGET_MOVE_MILLIS = Long.parseLong(System.getProperty("targetMoveMillis", "0"));
+    public static int MAX_ITERATIVE_DEPTH = Integer.parseInt(System.getProperty("maxIterativeDepth", "16"));
+    public static boolean USE_FORK_JOIN = Boolean.parseBoolean(System.getProperty("forkJoin", "false"));
+    public static int SEARCH_THREADS = Integer.parseInt(System.getProperty("searchThreads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+    public static int SEQUENTIAL_CUTOFF = Integer.parseInt(System.getProperty("sequentialCutoff", "3"));
+    // Off by default like chancePruning, as it changes the moves, see ProbabilityCutoffReport for thresholds
+    public static double PROBABILITY_THRESHOLD = Double.parseDouble(System.getProperty("probThreshold", "0"));
+    // Star1 pruning of chance nodes, see setChancePruning
+    public static boolean CHANCE_PRUNING = Boolean.parseBoolean(System.getProperty("chancePruning", "false"));
+    public static boolean PONDER = Boolean.parseBoolean(System.getProperty("ponder", "false"));
+    public static int PONDER_POSITIONS = Integer.parseInt(System.getProperty("ponderPositions", "30"));
+    public static boolean USE_JMX = Boolean.parseBoolean(System.getProperty("jmx", "true"));
+    public static String WEIGHTS_FILE = System.getProperty("weights", "");
+    public static String OPENING_BOOK = System.getProperty("openingBook", "");
+    // Default of every solver, see setSearchTimeout
+    public static long SEARCH_TIMEOUT = Long.parseLong(System.getProperty("searchTimeout", "5000"));
 
     private Logger log = Logger.getLogger(Expectimax.class);
 
     private Direction[] directions;
     private Controller controller;
     private ExecutorService es;
+    private boolean ownsExecutor = true;
+    private boolean forkJoin;
     private Random random;
     private int depthLimit;
     private int maxDepthLimit;
-
-    private boolean SNAKE = false;
-    private boolean GRADIENT = false;
-    private boolean HIGH_CORNER = true;
-    private boolean FREE_CELLS = true;
-    private boolean POSSIBLE_MERGES = false;
+    private TranspositionTable transpositionTable;
+    private boolean ownsTable;
+    private DepthController depthController;
+    private double probabilityThreshold;
+    private boolean chancePruning;
+    private SearchMetrics metrics;
+    private LongAdder nodesSearched;
+    private LongAdder leafEvaluations;
+    private int lastSearchDepth;
+    private volatile long deadline;
+    private volatile boolean aborted;
+    private volatile boolean stopped;
+    private volatile boolean timedOut;
+    // Set while Ponderer searches ahead, such searches are not moves played
+    private boolean pondering;
+    private long searchTimeout;
+    private volatile int lastCompletedDepth;
+
+    private Evaluator evaluator;
+    private OpeningBook openingBook;
+
+    private static Evaluator defaultEvaluator;
+    private static OpeningBook defaultOpeningBook;
+    private static boolean defaultOpeningBookOpened;
 
 
     public Expectimax(Controller controller, int depthLimit) {
-        log.info("Starting Expectimax solver with " + Runtime.getRuntime().availableProcessors() + " core threads");
+        this(controller, depthLimit, null, null);
+    }
+
+    public Expectimax(Controller controller, int depthLimit, ExecutorService pool, TranspositionTable table) {
+        this(controller, depthLimit, pool, table, getDefaultEvaluator());
+    }
+
+    /**
+     * Creates a solver searching in a pool shared with other solvers or work, used by the headless simulator
+     * @param controller The controller, or null if the solver is only asked for moves on packed boards
+     * @param depthLimit The depth limit used when the board has plenty of free cells
+     * @param pool The pool to search in, owned by the caller and left running by shutdown(). Null creates a pool.
+     * @param table The transposition table to use, shared with other solvers. Its owner starts the new searches
+     *              on it, see TranspositionTable.newSearch. Null creates one if enabled.
+     * @param evaluator The leaf evaluator. A shared transposition table must only be shared with solvers using
+     *                  the same evaluator.
+     */
+    public Expectimax(Controller controller, int depthLimit, ExecutorService pool, TranspositionTable table, Evaluator evaluator) {
         this.controller = controller;
         this.depthLimit = depthLimit;
         this.maxDepthLimit = Integer.parseInt(System.getProperty("maxDepth", "8"));
         this.directions = Direction.values();
         this.random = new Random();
-        // Let our thread pool consist of one thread per available processor core
-        this.es = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.probabilityThreshold = PROBABILITY_THRESHOLD;
+        this.chancePruning = CHANCE_PRUNING;
+        this.searchTimeout = SEARCH_TIMEOUT;
+        this.evaluator = evaluator;
+        if (TARGET_MOVE_MILLIS > 0) {
+            this.depthController = new DepthController(TARGET_MOVE_MILLIS, MAX_ITERATIVE_DEPTH);
+        }
+        if (TT_SYMMETRY && !evaluator.isSymmetric()) {
+            log.warn("Symmetric transposition table in use with an asymmetric heuristic: " + evaluator);
+        }
+        this.openingBook = getDefaultOpeningBook();
+        if (openingBook != null && !openingBook.isSearchedWith(evaluator)) {
+            log.warn("Opening book " + OPENING_BOOK + " was searched with another heuristic than " + evaluator);
+        }
+        if (table != null) {
+            this.transpositionTable = table;
+        } else if (USE_TRANSPOSITION_TABLE) {
+            // Shared by all directional search threads, see TranspositionTable for why this needs no locking
+            this.transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE_BITS, TRANSPOSITION_TABLE_POLICY);
+            this.ownsTable = true;
+            log.info("Using " + transpositionTable);
+        }
+        if (pool != null) {
+            this.es = pool;
+            this.ownsExecutor = false;
+        } else if (USE_FORK_JOIN) {
+            log.info("Starting Expectimax solver with " + SEARCH_THREADS + " core threads (fork/join)");
+            // Work-stealing pool, the root directions and the chance nodes above the sequential cutoff fork into it
+            this.es = new ForkJoinPool(SEARCH_THREADS);
+        } else {
+            log.info("Starting Expectimax solver with " + SEARCH_THREADS + " core threads");
+            // Let our thread pool consist of one thread per available processor core
+            this.es = Executors.newFixedThreadPool(SEARCH_THREADS);
+        }
+        this.forkJoin = this.es instanceof ForkJoinPool;
+
+        this.metrics = new SearchMetrics(this.es);
+        this.nodesSearched = metrics.nodes;
+        this.leafEvaluations = metrics.leaves;
+        if (USE_JMX) {
+            metrics.register();
+        }
     }
 
     /**
-     * Creates a search in all four directions and returns the best direction
+     * Creates a search in all four directions from the current state of the controller board
      * @return The direction to move in
      */
     public Direction getNextMove() {
+        return getNextMove(BitBoard.fromArray(controller.getBoard().getBoard()));
+    }
 
-        double bestValue = 0.0;
-        Direction bestDirection = directions[random.nextInt(4)];
+    /**
+     * Returns the move of the -DopeningBook if the board is in it, otherwise creates a search in all four
+     * directions and returns the best direction. The depth is deepened until the -DmoveTimeBudget runs out,
+     * predicted by the DepthController to fit -DtargetMoveMillis, or else taken from the free cells.
+     * @param board The packed board to search from
+     * @return The direction to move in
+     */
+    public Direction getNextMove(long board) {
+        if (openingBook != null) {
+            Direction booked = openingBook.get(board);
+            if (booked != null) {
+                log.debug("Moving in direction: " + booked + " from the opening book");
+                return booked;
+            }
+        }
+        if (ownsTable) {
+            transpositionTable.newSearch();
+        }
+
+        long start = System.nanoTime();
+        long nodesBefore = nodesSearched.sum();
+        DirectionValueTuple best;
+        if (MOVE_TIME_BUDGET > 0) {
+            best = searchIteratively(board, MOVE_TIME_BUDGET);
+        } else if (depthController != null) {
+            best = searchAllDirections(board, depthController.chooseDepth(board));
+        } else {
+            best = searchAllDirections(board, 0);
+        }
+        long nanos = System.nanoTime() - start;
+        long nodes = nodesSearched.sum() - nodesBefore;
+        if (!pondering) {
+            metrics.recordMove(nanos, nodes, lastSearchDepth);
+            if (depthController != null && MOVE_TIME_BUDGET <= 0) {
+                depthController.record(nodes, nanos);
+            }
+        }
+
+        log.debug("Moving in direction: " + best.dir + " with value " + best.value);
+        if (transpositionTable != null) {
+            log.debug(transpositionTable);
+        }
+        log.debug("Direction code " + best.dir.directionCode );
+
+        /* Appends the current state, and the move actuated to a file on the following format:
+
+            2,0,2,8,2,8,16,256,2,16,8,64,4,2,8,32,2
+
+            Each pair of four represent a row on the board, from top to bottom. The last
+            digit represent the direction. See Direction for a detailed description of the
+            direction code.
 
-        /**
-         * The DirectionValueTuple is used as a return value from the async directional search threads
          */
-        class DirectionValueTuple {
+        /*
+        if ((GAME_DATA_SCRAPER) && (boardState != null)) {
+            GameDataAppender.appendToFile(getFlattenedBoard(boardState) + bestDirection.directionCode + "\n");
+        }
+        */
 
-            Direction dir;
-            Double value;
+        return best.dir;
+    }
 
-            public DirectionValueTuple(Direction d, Double v) {
-                this.dir = d;
-                this.value = v;
+    /**
+     * Searches like getNextMove, but leaves the search out of the metrics and the DepthController, as it is a
+     * speculative search by Ponderer, which may be aborted halfway and is not played unless pondered right
+     * @param board The packed board to search from
+     * @return The direction to move in
+     */
+    Direction ponderMove(long board) {
+        pondering = true;
+        try {
+            return getNextMove(board);
+        } finally {
+            pondering = false;
+        }
+    }
+
+    /**
+     * Searches all four directions to a fixed depth, ignoring the free cell depth limits and the time budget
+     * @param board The packed board to search from
+     * @param depth The depth to search each direction to
+     * @return The direction to move in
+     */
+    public Direction getNextMove(long board, int depth) {
+        if (ownsTable) {
+            transpositionTable.newSearch();
+        }
+        long start = System.nanoTime();
+        long nodesBefore = nodesSearched.sum();
+        Direction best = searchAllDirections(board, depth).dir;
+        metrics.recordMove(System.nanoTime() - start, nodesSearched.sum() - nodesBefore, depth);
+        return best;
+    }
+
+    /**
+     * Anytime search, searching to depth 1, 2, 3 ... until the time budget runs out. The search in progress
+     * when the deadline passes is abandoned, and the result of the deepest fully completed depth is returned.
+     * @param board The packed board to search from
+     * @param budget The time budget in milliseconds
+     * @return The best direction and its value
+     */
+    private DirectionValueTuple searchIteratively(long board, long budget) {
+        long start = System.nanoTime();
+        DirectionValueTuple best = null;
+        int completedDepth = 0;
+
+        deadline = start + TimeUnit.MILLISECONDS.toNanos(budget);
+        for (int depth = 1; depth <= MAX_ITERATIVE_DEPTH; depth++) {
+            DirectionValueTuple result = searchAllDirections(board, depth);
+            if (aborted || stopped) {
+                break;
+            }
+            best = result;
+            completedDepth = depth;
+            if (System.nanoTime() >= deadline) {
+                break;
             }
         }
+        deadline = 0L;
+        aborted = false;
+
+        if (best == null) {
+            // Not even depth 1 completed in time, so finish it regardless of the budget
+            best = searchAllDirections(board, 1);
+            completedDepth = 1;
+        }
+
+        lastCompletedDepth = completedDepth;
+        lastSearchDepth = completedDepth;
+        log.info("Iterative deepening completed depth " + completedDepth + " in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return best;
+    }
+
+    /**
+     * Searches all four directions in parallel, one task per direction
+     * @param board The packed board to search from
+     * @param fixedDepth The depth to search each direction to, or 0 to pick it from the free cell count
+     * @return The best direction and its value
+     */
+    private DirectionValueTuple searchAllDirections(long board, int fixedDepth) {
+        DirectionValueTuple best = new DirectionValueTuple(directions[random.nextInt(4)], 0.0);
+        // Best value found by the direction tasks so far, a direction that can't beat it needs no exact value
+        DoubleAccumulator rootValue = new DoubleAccumulator(Math::max, best.value);
 
         // Set up our 4 different search direction tasks
         ArrayList<Callable<DirectionValueTuple>> tasks = new ArrayList<>();
         for (Direction d : Direction.values()) {
             tasks.add(() -> {
-                int[][] boardCopy = controller.getBoard().getCopyOfBoard(); // Get copy of the current state in the actual board.
-                Object[] values = move(boardCopy, d); // Both board and new score returned. We only want the board
-                int[][] movedBoard = (int[][]) values[0];
+                long taskStart = System.nanoTime();
+                long movedBoard = BitBoard.move(board, d);
 
                 DirectionValueTuple result = new DirectionValueTuple(d, 0.0);
 
@@ -95,94 +327,133 @@ public class Expectimax implements Solver {
                     return result;
                 }
 
-                if (!Arrays.deepEquals(movedBoard, boardCopy)) {
-                    // Dynamically adjust depth limit based on free cells
-                    int freeCells = getFreeCellCount(movedBoard);
-                    int dl = depthLimit;
-                    if (freeCells < 2) dl = this.maxDepthLimit;
-                    else if (freeCells < 4) dl = this.maxDepthLimit - 2;
-                    else if (freeCells < 6) dl = this.maxDepthLimit - 4;
-
-                    result.value = expectimax(movedBoard, dl, false);
+                if (movedBoard != board) {
+                    int dl = fixedDepth > 0 ? fixedDepth : getDepthLimit(movedBoard);
+                    // Just below the best value, so a direction only fails low if it would lose to it on a tie as well
+                    double cutoff = chancePruning ? Math.nextDown(rootValue.get()) : Double.NEGATIVE_INFINITY;
+                    result.value = expectimax(movedBoard, dl, false, 1.0, cutoff);
+                    if (timedOut) {
+                        // Abandoned, the value is meaningless
+                        return null;
+                    }
+                    rootValue.accumulate(result.value);
+                    result.depth = dl;
+                    result.nanos = System.nanoTime() - taskStart;
                 }
 
                 return result;
             });
         }
 
-        // Execute and await results for all our 4 tasks
+        // Execute our 4 tasks, and await their results until one shared deadline
+        ArrayList<Future<DirectionValueTuple>> futures = new ArrayList<>();
+        for (Callable<DirectionValueTuple> task : tasks) {
+            futures.add(this.es.submit(task));
+        }
+        long timeoutDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchTimeout);
+        long[] taskNanos = new long[tasks.size()];
+        int depth = 0;
         try {
-            for (Future<DirectionValueTuple> d : this.es.invokeAll(tasks)) {
-                DirectionValueTuple result = d.get(5, TimeUnit.SECONDS);
+            int task = 0;
+            for (Future<DirectionValueTuple> d : futures) {
+                DirectionValueTuple result;
+                try {
+                    result = searchTimeout <= 0 || timedOut ? d.get()
+                            : d.get(Math.max(timeoutDeadline - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    // Makes the late tasks return at every node they reach, so they free their threads right away
+                    timedOut = true;
+                    result = d.get();
+                }
+                if (result == null) {
+                    task++;
+                    continue;
+                }
 
                 log.debug("Direction " + result.dir + " with value " + result.value);
-                if (result.value > bestValue) {
-                    bestValue = result.value;
-                    bestDirection = result.dir;
+                if (result.value > best.value) {
+                    best = result;
                 }
+                taskNanos[task++] = result.nanos;
+                depth = Math.max(depth, result.depth);
             }
         } catch (InterruptedException e) {
             log.error("Interrupted during expectimax parallel search!");
         } catch (ExecutionException e) {
             log.error("Caught execution exception during expectimax parallel search: " + e.getMessage());
-        } catch (TimeoutException e) {
+        }
+        if (timedOut) {
+            // Every task has returned, so the next search can't be mistaken for this one
+            timedOut = false;
+            if (!pondering) {
+                metrics.recordTimeout();
+            }
             log.error("Execution of expectimax parallel directional search task exceeded timeout threshold!");
+            // If no direction finished with a value, fall back on a legal move rather than any random one
+            for (int i = 0; i < 4 && BitBoard.move(board, best.dir) == board; i++) {
+                best.dir = directions[(best.dir.directionCode + 1) & 3];
+            }
         }
-
-        log.debug("Moving in direction: " + bestDirection + " with value " + bestValue);
-        log.debug("Direction code " + bestDirection.directionCode );
-
-        /* Appends the current state, and the move actuated to a file on the following format:
-
-            2,0,2,8,2,8,16,256,2,16,8,64,4,2,8,32,2
-
-            Each pair of four represent a row on the board, from top to bottom. The last
-            digit represent the direction. See Direction for a detailed description of the
-            direction code.
-
-         */
-        /*
-        if ((GAME_DATA_SCRAPER) && (boardState != null)) {
-            GameDataAppender.appendToFile(getFlattenedBoard(boardState) + bestDirection.directionCode + "\n");
+        if (!pondering) {
+            metrics.recordRootTasks(taskNanos);
         }
-        */
+        lastSearchDepth = depth;
+
+        return best;
+    }
 
-        return bestDirection;
+    /**
+     * Dynamically adjust depth limit based on free cells
+     * @param movedBoard The packed board after the root move
+     * @return The depth to search the board to
+     */
+    private int getDepthLimit(long movedBoard) {
+        int freeCells = getFreeCellCount(movedBoard);
+        int dl = depthLimit;
+        if (freeCells < 2) dl = this.maxDepthLimit;
+        else if (freeCells < 4) dl = this.maxDepthLimit - 2;
+        else if (freeCells < 6) dl = this.maxDepthLimit - 4;
+        return dl;
     }
 
-    private double expectimax(int[][] board, int depth, boolean isMaximizingPlayer) {
+    /**
+     * @param probability The probability of the spawns leading to this node, once it falls below the
+     *                    probability threshold the node is evaluated as a leaf
+     * @param cutoff The value at or below which the exact value of the node does not matter to its parent, see
+     *               the Star1 pruning below. If the node fails low like this, the value returned is only an upper
+     *               bound at or below the cutoff. Negative infinity asks for the exact value.
+     */
+    private double expectimax(long board, int depth, boolean isMaximizingPlayer, double probability, double cutoff) {
         // Due to how 2048 works, we only have a max and chance node. We neglect the min node
         // log.debug("expectimax(" + depth + ", " + isMaximizingPlayer + ")");
         double alpha;
         boolean victory = isVictory(board);
+        nodesSearched.increment();
 
-        if (depth == 0 || victory) {
-            double heuristic = 0.0;
-
-            if (SNAKE) heuristic += getSnakeValue(board);
-            if (GRADIENT) heuristic += getGradientValue(board) * 1.2;
-            if (HIGH_CORNER) heuristic += highestInCorner(board) * 1.3;
-            if (FREE_CELLS) heuristic += Math.log(getFreeCellCount(board));
-            if (POSSIBLE_MERGES) heuristic += Math.log(getNumPossibleMerges(board));
-
-            /* THIS IS THE GRADIENT VERSION */
-            //double h1 = getGradientValue(board) * 1.2;
+        if (stopped || timedOut) {
+            // Abandoned from another thread, see abortSearch, or out of the search timeout
+            return 0.0;
+        }
 
-            /* THIS IS THE SNAKE VERSION */
-            //double h1 = getGradientValue(board);
+        if (deadline != 0L && (aborted || (depth > 1 && System.nanoTime() > deadline))) {
+            // Out of time, the value is discarded by searchIteratively
+            aborted = true;
+            return 0.0;
+        }
 
-            /* OTHER HEURISTIC */
-            //double h2 = highestInCorner(board) * 1.3;
-            //double h3 = Math.log(getFreeCellCount(board));
-            //double h4 = Math.log(getNumPossibleMerges(board));
+        if (depth == 0 || victory || probability < probabilityThreshold) {
+            leafEvaluations.increment();
+            return evaluator.evaluate(board);
+        }
 
-            //log.info("BottomORVictory (" + depth + "): h2: " + h2 + " h3: " + h3  + " h4: " + h4);
-            //log.info("BottomORVictory ("+depth+"): Heuristic: " + h2 + " " + h3);
-            //return h1 + h2 + h3;
-            //return h1 + h2 + h3 + h4;
-            //return h2 + h3;
-            //return h1;
-            return heuristic;
+        // Symmetric boards share one entry, which is only sound as long as the heuristic is symmetric
+        long key = TT_SYMMETRY ? BoardSymmetry.canonicalize(board) : board;
+        if (transpositionTable != null) {
+            // A deeper entry can be above the bound the Star1 pruning of the parent assumed
+            double cached = transpositionTable.probe(key, depth, isMaximizingPlayer, chancePruning);
+            if (!Double.isNaN(cached)) {
+                return cached;
+            }
         }
 
         if (isMaximizingPlayer) {
@@ -193,18 +464,20 @@ public class Expectimax implements Solver {
                 α := max(α, expectiminimax(child, depth-1))
              */
             alpha = 0.0;
-            for (Direction directionToMove : Direction.values()) {
-                int[][] boardCopy = getCopyOfBoard(board); // Get copy of the board sent as argument
-                Object[] values = move(boardCopy, directionToMove);
-                int[][] movedBoard = (int[][]) values[0];
+            for (Direction directionToMove : directions) {
+                long movedBoard = move(board, directionToMove);
 
-                if (Arrays.deepEquals(movedBoard, board)) {
+                if (movedBoard == board) {
                     continue;
                 }
 
-                alpha = Math.max(alpha, expectimax(movedBoard, depth - 1, false));
+                alpha = Math.max(alpha, expectimax(movedBoard, depth - 1, false, probability, Math.max(cutoff, alpha)));
             }
             //log.info("MAX NODE (" + depth + "): MaxValue: " + alpha);
+            // At or below the cutoff the value may be the bound of a child that failed low
+            if (transpositionTable != null && !aborted && !stopped && !timedOut && alpha > cutoff) {
+                transpositionTable.store(key, depth, true, alpha);
+            }
             return alpha;
 
         } else {
@@ -216,19 +489,54 @@ public class Expectimax implements Solver {
              */
             alpha = 0.0;
             double totalChildren = 0;
-            for (int row = 0; row < BOARD_SIZE; row++) {
-                for (int col = 0; col < BOARD_SIZE; col++) {
-                    if (board[row][col] == 0) {
-                        // Create copy for 2 tiles
-                        int[][] newBoard1 = getCopyOfBoard(board);
-                        newBoard1[row][col] = 2;
-                        double score = expectimax(newBoard1, depth - 1, true);
+            double cellProbability = probability / getFreeCellCount(board);
+            double upperBound = chancePruning && cutoff > Double.NEGATIVE_INFINITY
+                    ? Math.max(evaluator.getUpperBound(board, depth / 2), 0.0) : Double.POSITIVE_INFINITY;
+            if (forkJoin && depth > SEQUENTIAL_CUTOFF && ForkJoinTask.inForkJoinPool()) {
+                alpha = forkChanceChildren(board, depth, cellProbability);
+                totalChildren = getFreeCellCount(board);
+            } else if (upperBound < Double.POSITIVE_INFINITY) {
+                /*
+                Star1: every child not yet searched is worth at most the upper bound, a max node is never below
+                0. Once the searched children and the bound for the rest can't get above the cutoff, the rest
+                is skipped. Each child is searched with the cutoff it has to beat for that not to happen.
+                 */
+                int freeCells = getFreeCellCount(board);
+                // Spawn weight not yet searched, in tenths so it reaches exactly 0
+                int remainingTenths = 10 * freeCells;
+                for (int cell = 0; cell < 16; cell++) {
+                    int shift = cell << 2;
+                    if (((board >>> shift) & 0xF) == 0) {
+                        for (int exponent = 1; exponent <= 2; exponent++) {
+                            // Same products and order of additions as below, so the value is the same when nothing is cut
+                            double weight = exponent == 1 ? 0.9 : 0.1;
+                            remainingTenths -= exponent == 1 ? 9 : 1;
+                            double rest = remainingTenths == 0 ? 0.0 : remainingTenths / 10.0 * upperBound;
+                            double childCutoff = (cutoff * freeCells - alpha - rest) / weight;
+                            double score = expectimax(board | ((long) exponent << shift), depth - 1, true,
+                                    cellProbability * weight, childCutoff);
+                            alpha += (weight * score);
+
+                            double bound = (alpha + rest) / freeCells;
+                            if (score <= childCutoff || bound <= cutoff) {
+                                return Math.min(bound, cutoff);
+                            }
+                        }
+                        totalChildren++;
+                    }
+                }
+            } else {
+                for (int cell = 0; cell < 16; cell++) {
+                    int shift = cell << 2;
+                    if (((board >>> shift) & 0xF) == 0) {
+                        // Spawn a 2 tile (exponent 1)
+                        double score = expectimax(board | (1L << shift), depth - 1, true, cellProbability * 0.9,
+                                Double.NEGATIVE_INFINITY);
                         alpha += (0.9 * score);
 
-                        // Create copy for 4 tiles
-                        int[][] newBoard2 = getCopyOfBoard(board);
-                        newBoard2[row][col] = 4;
-                        double score1 = expectimax(newBoard2, depth - 1, true);
+                        // Spawn a 4 tile (exponent 2)
+                        double score1 = expectimax(board | (2L << shift), depth - 1, true, cellProbability * 0.1,
+                                Double.NEGATIVE_INFINITY);
                         alpha += (0.1 * score1);
 
                         totalChildren++;
@@ -237,10 +545,36 @@ public class Expectimax implements Solver {
             }
             double value = alpha / totalChildren;
             //log.info("CHANCE NODE ("+ depth +"): Alpha: " + alpha + " TotalProb: " + totalProbability + " Tot: " + value);
+            if (transpositionTable != null && !aborted && !stopped && !timedOut) {
+                transpositionTable.store(key, depth, false, value);
+            }
             return value;
         }
     }
 
+    /**
+     * Forks one subtask per empty cell and spawn value of a chance node, and waits for all of them
+     * @return The probability weighted sum of the children, not yet divided by the number of empty cells
+     */
+    private double forkChanceChildren(long board, int depth, double cellProbability) {
+        ExpectimaxTask[] children = new ExpectimaxTask[getFreeCellCount(board) * 2];
+        int child = 0;
+        for (int cell = 0; cell < 16; cell++) {
+            int shift = cell << 2;
+            if (((board >>> shift) & 0xF) == 0) {
+                children[child++] = new ExpectimaxTask(board | (1L << shift), depth - 1, cellProbability * 0.9);
+                children[child++] = new ExpectimaxTask(board | (2L << shift), depth - 1, cellProbability * 0.1);
+            }
+        }
+        ForkJoinTask.invokeAll(children);
+
+        double alpha = 0.0;
+        for (int i = 0; i < children.length; i += 2) {
+            alpha += 0.9 * children[i].join() + 0.1 * children[i + 1].join();
+        }
+        return alpha;
+    }
+
     /**
      * Does a move in the direction returned by the search
      */
@@ -258,51 +592,86 @@ public class Expectimax implements Solver {
             long start = System.currentTimeMillis();
             log.info("Starting solver ...");
 
-            // We need an atomic value signaling when the FX Application is complete with its UI update
-            AtomicBoolean complete = new AtomicBoolean(true);
-            while (!controller.getBoard().hasWon() && controller.getBoard().canMove()) {
-                // Spin until last GUI update is complete
-                while(!complete.get());
-                // Set that we are now working
-                complete.getAndSet(false);
+            // Searches the likely positions after the next spawn while the GUI update delay passes
+            Ponderer ponderer = PONDER ? new Ponderer(this, PONDER_POSITIONS) : null;
 
+            // The search runs on this (the solver) thread, the FX thread only redraws published board snapshots
+            while (!controller.getBoard().hasWon() && controller.getBoard().canMove()) {
                 if (GUI_UPDATE_DELAY > 0) {
-                    // Sleep for the specifi ed GUI update interval
+                    // Sleep for the specified GUI update interval
                     try {
                         Thread.sleep(GUI_UPDATE_DELAY);
                     } catch (InterruptedException e) {
                         log.error("Interrupted during GUI Update sleep");
+                        break;
                     }
                 }
 
-                // Enqueue the next move + GUI update
-                Platform.runLater(() -> {
-                    Direction directionToMove = getNextMove();
-                    controller.doMove(directionToMove);
-                    // Signal that we are good to go for the next move
-                    complete.getAndSet(true);
-                });
+                long board = BitBoard.fromArray(controller.getBoard().getBoard());
+                Direction directionToMove = ponderer != null ? ponderer.getNextMove(board) : getNextMove(board);
+                controller.applyMove(directionToMove);
+                if (ponderer != null) {
+                    ponderer.ponder(BitBoard.move(board, directionToMove));
+                }
+                controller.publishBoard();
             }
 
+            if (ponderer != null) {
+                log.info(ponderer);
+                ponderer.shutdown();
+            }
             log.info("Solver ended after " + ((System.currentTimeMillis() - start) / 1000) + " seconds.");
+            log.info(metrics);
+            if (depthController != null) {
+                log.info(depthController);
+            }
+            if (openingBook != null) {
+                log.info(openingBook);
+            }
         });
     }
 
     public void solveForStatistics() {
         log.info("Starting statistics solver for "+NUMBER_OF_STATISTICS_RUNS+" runs...");
+        StatisticsReport report = new StatisticsReport(StatisticsReport.LABEL);
         int i = 0;
         while (i < NUMBER_OF_STATISTICS_RUNS) {
             i++;
             controller.reset();
             long start = System.currentTimeMillis();
+            int moves = 0;
+            int searches = 0;
+            long searchNanos = 0L;
             log.info("Starting new iteration...");
             while (!controller.getBoard().hasWon() && controller.getBoard().canMove()) {
+                long searchStart = System.nanoTime();
                 Direction directionToMove = getNextMove();
-                controller.doMove(directionToMove);
+                searchNanos += System.nanoTime() - searchStart;
+                searches++;
+                if (controller.doMove(directionToMove)) {
+                    moves++;
+                }
             }
             log.info("Solver ended after " + ((System.currentTimeMillis() - start) / 1000) + " seconds.");
-            GameDataAppender.appendToFile("-\n");
+            log.info(metrics);
+            if (depthController != null) {
+                log.info(depthController);
+            }
+            GameDataAppender.endGame();
+
+            Board board = controller.getBoard();
+            GameResult result = new GameResult(i, board.getCurrentScore(),
+                    BitBoard.toValue(getMaxExponent(BitBoard.fromArray(board.getBoard()))),
+                    moves, System.currentTimeMillis() - start, searches, searchNanos);
+            log.info(result);
+            report.add(result);
         }
+        report.finish();
+        log.info(report);
+        if (openingBook != null) {
+            log.info(openingBook);
+        }
+        report.write(StatisticsReport.OUTPUT);
     }
 
     public void solveForStatisticsUsingSocket() {
@@ -380,17 +749,171 @@ public class Expectimax implements Solver {
         GAME_DATA_SCRAPER = false;
         if (GAME_DATA_SCRAPER) {
             Direction expectimaxMove = getNextMove();
-            GameDataAppender.appendToFile(getFlattenedBoard(b) + expectimaxMove.directionCode + "\n");
+            GameDataAppender.appendToFile(Board.getFlattenedBoard(b) + expectimaxMove.directionCode + "\n");
         }
 
         return Direction.values()[direction];
     }
 
     /**
-     * Shuts down the solver gracefully, by terminating the thread pool executor
+     * Seeds the random choice of direction made when no direction scores above 0, for reproducible games
+     * @param seed The seed
+     */
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Returns the evaluator of solvers created without one: the weights of -Dweights if given, otherwise the
+     * weight profile -Dprofile. It is created once and shared by all solvers.
+     * @return The evaluator
+     */
+    public static synchronized Evaluator getDefaultEvaluator() {
+        if (defaultEvaluator == null) {
+            Logger log = Logger.getLogger(Expectimax.class);
+            if (!WEIGHTS_FILE.isEmpty()) {
+                try {
+                    defaultEvaluator = HeuristicEvaluator.load(new File(WEIGHTS_FILE));
+                    log.info("Loaded " + defaultEvaluator + " from " + WEIGHTS_FILE);
+                } catch (IOException | IllegalArgumentException e) {
+                    log.error("Could not load heuristic weights from " + WEIGHTS_FILE + ", using profile "
+                            + WeightProfiles.PROFILE + ": " + e.getMessage());
+                }
+            }
+            if (defaultEvaluator == null) {
+                defaultEvaluator = WeightProfiles.get(WeightProfiles.PROFILE);
+                log.info("Using weight profile " + WeightProfiles.PROFILE + ": " + defaultEvaluator);
+            }
+        }
+        return defaultEvaluator;
+    }
+
+    /**
+     * Returns the opening book of solvers created, opened read-only from -DopeningBook once and shared by all
+     * solvers. The builder may still be appending to it.
+     * @return The book, or null if there is none or it could not be opened
+     */
+    public static synchronized OpeningBook getDefaultOpeningBook() {
+        if (!defaultOpeningBookOpened && !OPENING_BOOK.isEmpty()) {
+            Logger log = Logger.getLogger(Expectimax.class);
+            try {
+                defaultOpeningBook = OpeningBook.open(new File(OPENING_BOOK), false);
+                log.info("Using " + defaultOpeningBook);
+            } catch (IOException e) {
+                log.error("Could not open opening book " + OPENING_BOOK + ", searching every move: " + e.getMessage());
+            }
+        }
+        defaultOpeningBookOpened = true;
+        return defaultOpeningBook;
+    }
+
+    /**
+     * Sets the opening book consulted before searching
+     * @param openingBook The book, or null to always search
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Returns the depth controller picking the depth from -DtargetMoveMillis
+     * @return The controller, or null if the depth is picked from the free cells
+     */
+    public DepthController getDepthController() {
+        return depthController;
+    }
+
+    /**
+     * Returns the leaf evaluator
+     */
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Sets the time the directions of a root search get together. Directions not done by then are abandoned, and
+     * the move is picked from the others, or is any legal move if none finished.
+     * @param searchTimeout The timeout in milliseconds, 0 waits for every direction
+     */
+    public void setSearchTimeout(long searchTimeout) {
+        this.searchTimeout = searchTimeout;
+    }
+
+    /**
+     * Sets the path probability below which nodes are evaluated as leaves, 0 disables the cutoff
+     * @param probabilityThreshold The new threshold
+     */
+    public void setProbabilityThreshold(double probabilityThreshold) {
+        this.probabilityThreshold = probabilityThreshold;
+    }
+
+    /**
+     * Turns the Star1 pruning of chance nodes on or off, which changes the nodes searched but not the move. With
+     * pruning, only transposition table entries of the exact depth are used, as the value of a deeper search can
+     * exceed the upper bound of the evaluator the pruning relies on. The table then hits less often, so with it the
+     * pruning can search more nodes than it saves, see ChancePruningReport.
+     * @param chancePruning Whether to prune
+     */
+    public void setChancePruning(boolean chancePruning) {
+        this.chancePruning = chancePruning;
+    }
+
+    /**
+     * Returns the number of nodes expanded or evaluated since the solver was created
+     * @return The node count
+     */
+    public long getNodesSearched() {
+        return nodesSearched.sum();
+    }
+
+    /**
+     * Returns the search metrics of this solver, also registered as an MXBean unless -Djmx=false
+     * @return The metrics
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the deepest depth fully completed by the last iterative deepening search
+     * @return The depth, or 0 if iterative deepening is not in use
+     */
+    public int getLastCompletedDepth() {
+        return lastCompletedDepth;
+    }
+
+    /**
+     * Abandons the search running on another thread as soon as possible. Its result is meaningless, and
+     * nothing it found is stored in the transposition table. Searches keep returning at once until resumeSearch.
+     */
+    public void abortSearch() {
+        stopped = true;
+    }
+
+    /**
+     * Lets searches run again after abortSearch
+     */
+    public void resumeSearch() {
+        stopped = false;
+    }
+
+    /**
+     * Returns the transposition table shared by the search threads
+     * @return The table, or null if it is disabled
+     */
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    /**
+     * Shuts down the solver gracefully, by terminating the thread pool executor unless it is shared
      */
     @Override
     public void shutdown() {
+        metrics.unregister();
+        if (!ownsExecutor) {
+            return;
+        }
         this.es.shutdown();
         try {
             this.es.awaitTermination(5, TimeUnit.SECONDS);
@@ -399,4 +922,43 @@ public class Expectimax implements Solver {
         }
     }
 
+    /**
+     * The DirectionValueTuple is used as a return value from the async directional search threads
+     */
+    private static class DirectionValueTuple {
+
+        Direction dir;
+        Double value;
+        int depth;
+        long nanos;
+
+        public DirectionValueTuple(Direction d, Double v) {
+            this.dir = d;
+            this.value = v;
+        }
+    }
+
+    /**
+     * Searches the max node below a spawn, which may fork further chance nodes while above the sequential cutoff
+     */
+    private class ExpectimaxTask extends RecursiveTask<Double> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long board;
+        private final int depth;
+        private final double probability;
+
+        ExpectimaxTask(long board, int depth, double probability) {
+            this.board = board;
+            this.depth = depth;
+            this.probability = probability;
+        }
+
+        @Override
+        protected Double compute() {
+            return expectimax(board, depth, true, probability, Double.NEGATIVE_INFINITY);
+        }
+    }
+
 }
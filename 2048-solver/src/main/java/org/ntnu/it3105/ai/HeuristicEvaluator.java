@@ -0,0 +1,414 @@
+package org.ntnu.it3105.ai;
+
+import org.ntnu.it3105.game.BitBoard;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+
+import static org.ntnu.it3105.precompute.Precomputer.ROW_COUNT;
+
+/**
+ * Table-driven leaf evaluation for packed boards.
+ * <p>
+ * Every heuristic term is precomputed per 16-bit packed row, so an evaluation never scans the 4x4 board.
+ * The row-additive terms (empty cells, merges, monotonicity and tile sum) are folded into one weighted table
+ * that is looked up for the four rows and the four columns, eight lookups and an add. The original terms of
+ * Expectimax (snake, gradient, highest in corner, free cells and possible merges) are not additive, they take
+ * logarithms of board wide sums, so they are assembled from per-row sums, maxima and counts instead.
+ * A weight of 0 turns a term off. Weights can be stored to and loaded from a properties file, one key per term
+ * named as in WEIGHT_NAMES, which is what the weight tuner writes and -Dweights loads.
+ * <p>
+ * The weights are folded into the tables when the evaluator is created, so an evaluation only multiplies the
+ * two logarithms by their weights. Terms with weight 0, and the row-additive terms as a group, are skipped
+ * with a check on a final field. Those branches always go the same way for one evaluator, and measured faster
+ * than computing every term unconditionally.
+ * <p>
+ * The upper bound used by the Star1 pruning takes every term at its best for the highest tile and the free cells
+ * the leaves can have, as a move merges the highest tile at most once and frees at most 8 cells. It is
+ * precomputed for every combination of the current and the highest reachable highest tile and free cells.
+ */
+public class HeuristicEvaluator implements Evaluator {
+
+    // Names of the weights in the order of the constructor, and their keys in a weights file
+    public static final String[] WEIGHT_NAMES =
+            {"snake", "gradient", "highCorner", "freeCells", "possibleMerges", "empty", "merges", "monotonicity", "sum"};
+
+    // Power applied to tile exponents by the monotonicity and sum terms
+    private static final double MONOTONICITY_POWER = 4.0;
+    private static final double SUM_POWER = 3.5;
+
+    private static final double[][] SNAKE_WEIGHTS =
+            {{ 1,  128,  256, 32768},
+            {  2,   64,  512,  16384},
+            {  4,   32,  1024,  8192},
+            {  8,   16,  2048,  4096}};
+
+    private static final double[][] GRADIENT_WEIGHTS =
+            {{ 8, 16, 32,128},
+            {  4,  8, 24, 64},
+            {  2,  4, 16, 32},
+            {  1,  2,  8, 16}};
+
+    // Weight independent tables, shared by all evaluators
+    private static final byte[] ROW_EMPTY = new byte[ROW_COUNT];
+    private static final byte[] ROW_MAX = new byte[ROW_COUNT];
+    private static final byte[] ROW_HORIZONTAL_MERGES = new byte[ROW_COUNT];
+    private static final double[][] ROW_SNAKE = new double[4][ROW_COUNT];
+    private static final double[][] ROW_GRADIENT = new double[4][ROW_COUNT];
+    private static final double[] LOG_COUNT = new double[32];
+    private static final double[] CORNER_LOG = new double[16];
+    private static final double[] NO_CORNER_LOG = new double[16];
+
+    private static final double SNAKE_TOTAL = total(SNAKE_WEIGHTS);
+    private static final double GRADIENT_TOTAL = total(GRADIENT_WEIGHTS);
+
+    // Most free cells of a board with a tile, and most possible merges countPossibleMerges can count
+    private static final int MAX_FREE_CELLS = 15;
+    private static final int MAX_POSSIBLE_MERGES = 18;
+
+    // Nibble masks used for the vertical part of possible merges
+    private static final long NIBBLE_LOW_BITS = 0x1111111111111111L;
+    private static final long ROWS_ZERO_AND_TWO = 0x0000FFFF0000FFFFL;
+    private static final long MIDDLE_COLUMNS = 0x0FF00FF00FF00FF0L;
+
+    static {
+        for (int row = 0; row < ROW_COUNT; row++) {
+            int empty = 0;
+            int max = 0;
+            int merges = 0;
+            for (int col = 0; col < 4; col++) {
+                int exponent = (row >>> (col << 2)) & 0xF;
+                if (exponent == 0) empty++;
+                max = Math.max(max, exponent);
+                if (col < 3 && exponent == ((row >>> ((col + 1) << 2)) & 0xF)) merges++;
+                for (int r = 0; r < 4; r++) {
+                    ROW_SNAKE[r][row] += BitBoard.toValue(exponent) * SNAKE_WEIGHTS[r][col];
+                    ROW_GRADIENT[r][row] += BitBoard.toValue(exponent) * GRADIENT_WEIGHTS[r][col];
+                }
+            }
+            ROW_EMPTY[row] = (byte) empty;
+            ROW_MAX[row] = (byte) max;
+            ROW_HORIZONTAL_MERGES[row] = (byte) merges;
+        }
+        for (int i = 0; i < LOG_COUNT.length; i++) {
+            LOG_COUNT[i] = Math.log(i);
+        }
+        for (int exponent = 0; exponent < 16; exponent++) {
+            CORNER_LOG[exponent] = Math.log(BitBoard.toValue(exponent) * 10);
+            NO_CORNER_LOG[exponent] = Math.log(BitBoard.toValue(exponent) / 10);
+        }
+    }
+
+    private final double snake;
+    private final double gradient;
+    private final double highCorner;
+    private final double freeCells;
+    private final double possibleMerges;
+    private final double[] weights;
+    private final boolean rowTerms;
+
+    // Weighted sum of all row-additive terms, looked up for rows and columns alike
+    private final double[] rowScore = new double[ROW_COUNT];
+
+    // The weights of the other table terms folded into their tables
+    private final double[] cornerScore;
+    private final double[] noCornerScore;
+    private final double[] freeCellScore;
+    private final double[] possibleMergeScore;
+
+    // Upper bound on the evaluation by highest exponent now, highest reachable exponent and most reachable free
+    // cells, see getUpperBound
+    private final double[] upperBounds = new double[16 * 16 * 16];
+
+    /**
+     * Creates an evaluator with only the original Expectimax terms
+     */
+    public HeuristicEvaluator(double snake, double gradient, double highCorner, double freeCells, double possibleMerges) {
+        this(snake, gradient, highCorner, freeCells, possibleMerges, 0.0, 0.0, 0.0, 0.0);
+    }
+
+    /**
+     * Creates an evaluator with the original Expectimax terms and the row-additive terms
+     * @param snake Weight of the log of the snake weighted tile sum
+     * @param gradient Weight of the log of the gradient weighted tile sum
+     * @param highCorner Weight of the highest in corner term
+     * @param freeCells Weight of the log of the free cell count
+     * @param possibleMerges Weight of the log of the possible merges count
+     * @param empty Weight per empty cell, counted once for its row and once for its column
+     * @param merges Weight per pair of equal neighbours in a row or column, ignoring empty cells in between
+     * @param monotonicity Weight of the monotonicity penalty, which is 0 for rows and columns sorted in either direction
+     * @param sum Weight of the penalty for the sum of the tile exponents raised to SUM_POWER
+     */
+    public HeuristicEvaluator(double snake, double gradient, double highCorner, double freeCells, double possibleMerges,
+                              double empty, double merges, double monotonicity, double sum) {
+        this.snake = snake;
+        this.gradient = gradient;
+        this.highCorner = highCorner;
+        this.freeCells = freeCells;
+        this.possibleMerges = possibleMerges;
+        this.weights = new double[]{snake, gradient, highCorner, freeCells, possibleMerges, empty, merges, monotonicity, sum};
+        this.rowTerms = empty != 0.0 || merges != 0.0 || monotonicity != 0.0 || sum != 0.0;
+        this.cornerScore = weighted(highCorner, CORNER_LOG);
+        this.noCornerScore = weighted(highCorner, NO_CORNER_LOG);
+        this.freeCellScore = weighted(freeCells, LOG_COUNT);
+        this.possibleMergeScore = weighted(possibleMerges, LOG_COUNT);
+
+        for (int row = 0; row < ROW_COUNT; row++) {
+            rowScore[row] = empty * ROW_EMPTY[row]
+                    + merges * countMerges(row)
+                    + monotonicity * monotonicityPenalty(row)
+                    + sum * sumPenalty(row);
+        }
+
+        // Best row score among the rows without tiles above every exponent
+        double[] maxRowScore = new double[16];
+        Arrays.fill(maxRowScore, Double.NEGATIVE_INFINITY);
+        for (int row = 0; row < ROW_COUNT; row++) {
+            maxRowScore[ROW_MAX[row]] = Math.max(maxRowScore[ROW_MAX[row]], rowScore[row]);
+        }
+        for (int high = 1; high < 16; high++) {
+            maxRowScore[high] = Math.max(maxRowScore[high], maxRowScore[high - 1]);
+        }
+        for (int low = 0; low < 16; low++) {
+            for (int high = low; high < 16; high++) {
+                for (int free = 0; free <= MAX_FREE_CELLS; free++) {
+                    upperBounds[(low << 8) | (high << 4) | free] = upperBound(low, high, free, maxRowScore);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an evaluator from all nine weights, in the order of WEIGHT_NAMES
+     */
+    public static HeuristicEvaluator fromWeights(double[] weights) {
+        if (weights.length != WEIGHT_NAMES.length) {
+            throw new IllegalArgumentException("Expected " + WEIGHT_NAMES.length + " weights, got " + weights.length);
+        }
+        return new HeuristicEvaluator(weights[0], weights[1], weights[2], weights[3], weights[4],
+                weights[5], weights[6], weights[7], weights[8]);
+    }
+
+    /**
+     * Loads the weights from a properties file, terms missing from the file get weight 0
+     * @param file The weights file
+     * @return The evaluator
+     */
+    public static HeuristicEvaluator load(File file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        double[] weights = new double[WEIGHT_NAMES.length];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Double.parseDouble(properties.getProperty(WEIGHT_NAMES[i], "0").trim());
+        }
+        return fromWeights(weights);
+    }
+
+    /**
+     * Stores the weights as a properties file that load reads back
+     * @param file The weights file
+     * @param comment A comment written at the top of the file
+     */
+    public void store(File file, String comment) throws IOException {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("# " + comment);
+            for (int i = 0; i < weights.length; i++) {
+                // Written with all significant digits, so loading gives the exact same evaluator
+                out.println(WEIGHT_NAMES[i] + "=" + Double.toString(weights[i]));
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the weights, in the order of WEIGHT_NAMES
+     */
+    public double[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * Returns false if a term favours certain cells (snake and gradient) or rows (possible merges)
+     */
+    @Override
+    public boolean isSymmetric() {
+        return snake == 0.0 && gradient == 0.0 && possibleMerges == 0.0;
+    }
+
+    /**
+     * Returns the bound for the highest tile and free cells reachable in the moves, counting a spawned 4 as a
+     * highest tile. A move frees at most 8 cells and the spawn takes one.
+     */
+    @Override
+    public double getUpperBound(long board, int moves) {
+        int r0 = (int) (board & 0xFFFF);
+        int r1 = (int) ((board >>> 16) & 0xFFFF);
+        int r2 = (int) ((board >>> 32) & 0xFFFF);
+        int r3 = (int) (board >>> 48);
+        int low = Math.max(Math.max(ROW_MAX[r0], ROW_MAX[r1]), Math.max(ROW_MAX[r2], ROW_MAX[r3]));
+        int high = Math.min(15, Math.max(low, 2) + moves);
+        int free = Math.min(MAX_FREE_CELLS, ROW_EMPTY[r0] + ROW_EMPTY[r1] + ROW_EMPTY[r2] + ROW_EMPTY[r3] + 7 * moves);
+        return upperBounds[(low << 8) | (high << 4) | free];
+    }
+
+    @Override
+    public double evaluate(long board) {
+        int r0 = (int) (board & 0xFFFF);
+        int r1 = (int) ((board >>> 16) & 0xFFFF);
+        int r2 = (int) ((board >>> 32) & 0xFFFF);
+        int r3 = (int) (board >>> 48);
+
+        double heuristic = 0.0;
+        if (rowTerms) {
+            heuristic = rowScore[r0] + rowScore[r1] + rowScore[r2] + rowScore[r3]
+                    + rowScore[BitBoard.getColumn(board, 0)] + rowScore[BitBoard.getColumn(board, 1)]
+                    + rowScore[BitBoard.getColumn(board, 2)] + rowScore[BitBoard.getColumn(board, 3)];
+        }
+
+        if (snake != 0.0) {
+            heuristic += snake * Math.log(ROW_SNAKE[0][r0] + ROW_SNAKE[1][r1] + ROW_SNAKE[2][r2] + ROW_SNAKE[3][r3]);
+        }
+        if (gradient != 0.0) {
+            double sum = ROW_GRADIENT[0][r0] + ROW_GRADIENT[1][r1] + ROW_GRADIENT[2][r2] + ROW_GRADIENT[3][r3];
+            heuristic += gradient * Math.log(Math.max(sum, Double.MIN_VALUE));
+        }
+        if (highCorner != 0.0) {
+            int max = Math.max(Math.max(ROW_MAX[r0], ROW_MAX[r1]), Math.max(ROW_MAX[r2], ROW_MAX[r3]));
+            boolean inCorner = (r0 & 0xF) == max || (r0 >>> 12) == max || (r3 & 0xF) == max || (r3 >>> 12) == max;
+            heuristic += inCorner ? cornerScore[max] : noCornerScore[max];
+        }
+        if (freeCells != 0.0) {
+            heuristic += freeCellScore[ROW_EMPTY[r0] + ROW_EMPTY[r1] + ROW_EMPTY[r2] + ROW_EMPTY[r3]];
+        }
+        if (possibleMerges != 0.0) {
+            heuristic += possibleMergeScore[countPossibleMerges(board, r0, r2)];
+        }
+        return heuristic;
+    }
+
+    /**
+     * Sums the best value of every term over the boards with a highest exponent between low and high, and at
+     * most the given free cells
+     */
+    private double upperBound(int low, int high, int free, double[] maxRowScore) {
+        double bound = 0.0;
+        if (rowTerms) {
+            bound += 8 * maxRowScore[high];
+        }
+        if (snake != 0.0) {
+            bound += logTermBound(snake, BitBoard.toValue(low), BitBoard.toValue(high) * SNAKE_TOTAL);
+        }
+        if (gradient != 0.0) {
+            bound += logTermBound(gradient, Math.max(BitBoard.toValue(low), Double.MIN_VALUE),
+                    BitBoard.toValue(high) * GRADIENT_TOTAL);
+        }
+        if (highCorner != 0.0) {
+            double best = Double.NEGATIVE_INFINITY;
+            for (int max = low; max <= high; max++) {
+                best = Math.max(best, Math.max(cornerScore[max], noCornerScore[max]));
+            }
+            bound += best;
+        }
+        if (freeCells != 0.0) {
+            bound += max(freeCellScore, free);
+        }
+        if (possibleMerges != 0.0) {
+            bound += max(possibleMergeScore, MAX_POSSIBLE_MERGES);
+        }
+        return bound;
+    }
+
+    private static double logTermBound(double weight, double minSum, double maxSum) {
+        return Math.max(weight * Math.log(minSum), weight * Math.log(maxSum));
+    }
+
+    private static double max(double[] table, int last) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i <= last; i++) {
+            max = Math.max(max, table[i]);
+        }
+        return max;
+    }
+
+    private static double total(double[][] weights) {
+        double total = 0.0;
+        for (double[] row : weights) {
+            for (double weight : row) {
+                total += weight;
+            }
+        }
+        return total;
+    }
+
+    private static double[] weighted(double weight, double[] table) {
+        double[] result = new double[table.length];
+        for (int i = 0; i < table.length; i++) {
+            result[i] = weight * table[i];
+        }
+        return result;
+    }
+
+    /**
+     * Same count as BitBoard.getNumPossibleMerges: horizontal pairs in rows 0 and 2, and vertical pairs between
+     * rows 0 and 1 and rows 2 and 3, where the two middle columns are counted twice
+     */
+    private static int countPossibleMerges(long board, int r0, int r2) {
+        long diff = board ^ (board >>> 16);
+        long equal = ~(diff | (diff >>> 1) | (diff >>> 2) | (diff >>> 3)) & NIBBLE_LOW_BITS & ROWS_ZERO_AND_TWO;
+        return ROW_HORIZONTAL_MERGES[r0] + ROW_HORIZONTAL_MERGES[r2]
+                + Long.bitCount(equal) + Long.bitCount(equal & MIDDLE_COLUMNS);
+    }
+
+    private static int countMerges(int row) {
+        int merges = 0;
+        int previous = 0;
+        for (int col = 0; col < 4; col++) {
+            int exponent = (row >>> (col << 2)) & 0xF;
+            if (exponent == 0) continue;
+            if (exponent == previous) {
+                merges++;
+                previous = 0;
+            } else {
+                previous = exponent;
+            }
+        }
+        return merges;
+    }
+
+    private static double monotonicityPenalty(int row) {
+        double increasing = 0.0;
+        double decreasing = 0.0;
+        for (int col = 1; col < 4; col++) {
+            double previous = Math.pow((row >>> ((col - 1) << 2)) & 0xF, MONOTONICITY_POWER);
+            double current = Math.pow((row >>> (col << 2)) & 0xF, MONOTONICITY_POWER);
+            if (previous > current) {
+                increasing += previous - current;
+            } else {
+                decreasing += current - previous;
+            }
+        }
+        return -Math.min(increasing, decreasing);
+    }
+
+    private static double sumPenalty(int row) {
+        double sum = 0.0;
+        for (int col = 0; col < 4; col++) {
+            sum += Math.pow((row >>> (col << 2)) & 0xF, SUM_POWER);
+        }
+        return -sum;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder("HeuristicEvaluator{");
+        for (int i = 0; i < weights.length; i++) {
+            description.append(i == 0 ? "" : ", ").append(WEIGHT_NAMES[i]).append("=")
+                    .append(String.format(Locale.ROOT, "%.4g", weights[i]));
+        }
+        return description.append("}").toString();
+    }
+}
@@ -0,0 +1,318 @@
+package org.ntnu.it3105.ai;
+
+import org.apache.log4j.Logger;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.ntnu.it3105.game.Controller;
+import org.ntnu.it3105.game.Direction;
+import org.ntnu.it3105.simulation.GameResult;
+import org.ntnu.it3105.simulation.StatisticsReport;
+import org.ntnu.it3105.utils.GameDataAppender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scores every direction by the mean score of playouts from the position after it, a cheaper and weaker
+ * alternative to Expectimax for generating game data fast.
+ * <p>
+ * A playout spawns a tile and plays random (or greedy, the move merging the most) moves until the game is
+ * lost or mcPlayoutLength moves are made, and is worth the score of the first move plus the score of the
+ * playout. mcPlayouts playouts are run per direction, split into one task per thread and direction. The
+ * playouts work on packed boards with a xorshift random state kept in a local, so they allocate nothing.
+ */
+public class MonteCarloSolver implements Solver {
+
+    public static int PLAYOUTS = Integer.parseInt(System.getProperty("mcPlayouts", "200"));
+    public static int PLAYOUT_LENGTH = Integer.parseInt(System.getProperty("mcPlayoutLength", "50"));
+    public static Policy POLICY = Policy.valueOf(System.getProperty("mcPolicy", "RANDOM"));
+    private static long GUI_UPDATE_DELAY = Long.parseLong(System.getProperty("guiUpdateDelay", "0"));
+
+    /**
+     * How the moves of a playout are picked
+     */
+    public enum Policy {
+        // A uniformly random legal move
+        RANDOM,
+        // The move with the highest merge score, a random one among equals
+        GREEDY
+    }
+
+    // Direction.values() clones the array on every call
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private Logger log = Logger.getLogger(MonteCarloSolver.class);
+
+    private final Controller controller;
+    private final int playouts;
+    private final int playoutLength;
+    private final Policy policy;
+    private final int threads;
+    private final ExecutorService es;
+    private final AtomicLong seeds;
+    private final LongAdder playoutsRun = new LongAdder();
+    private final LongAdder playoutMoves = new LongAdder();
+
+    public MonteCarloSolver(Controller controller) {
+        this(controller, PLAYOUTS, PLAYOUT_LENGTH, POLICY, Expectimax.SEARCH_THREADS);
+    }
+
+    /**
+     * @param controller The controller, or null if the solver is only asked for moves on packed boards
+     * @param playouts The number of playouts per direction
+     * @param playoutLength The maximum number of moves of a playout
+     * @param policy How the playout moves are picked
+     * @param threads The number of threads running the playouts
+     */
+    public MonteCarloSolver(Controller controller, int playouts, int playoutLength, Policy policy, int threads) {
+        this.controller = controller;
+        this.playouts = playouts;
+        this.playoutLength = playoutLength;
+        this.policy = policy;
+        this.threads = threads;
+        this.es = Executors.newFixedThreadPool(threads);
+        this.seeds = new AtomicLong(System.nanoTime());
+        log.info("Starting Monte Carlo solver with " + playouts + " " + policy + " playouts of at most "
+                + playoutLength + " moves per direction on " + threads + " threads");
+    }
+
+    /**
+     * Seeds the playouts. Moves are only reproducible with a single thread, as the tasks take seeds in the
+     * order they start.
+     * @param seed The seed
+     */
+    public void setSeed(long seed) {
+        seeds.set(seed);
+    }
+
+    /**
+     * Runs the playouts of all four directions and returns the direction with the best mean playout score
+     * @param board The packed board to search from
+     * @return The direction to move in
+     */
+    public Direction getNextMove(long board) {
+        List<Callable<Long>> tasks = new ArrayList<>();
+        List<Direction> taskDirections = new ArrayList<>();
+        for (Direction direction : DIRECTIONS) {
+            long movedBoard = BitBoard.move(board, direction);
+            if (movedBoard == board) {
+                continue;
+            }
+            int score = BitBoard.getMoveScore(board, direction);
+            for (int part = 0; part < threads; part++) {
+                int count = playouts / threads + (part < playouts % threads ? 1 : 0);
+                if (count > 0) {
+                    tasks.add(() -> runPlayouts(movedBoard, score, count, nextSeed()));
+                    taskDirections.add(direction);
+                }
+            }
+        }
+        if (tasks.isEmpty()) {
+            // Game over, any direction will do
+            return Direction.LEFT;
+        }
+
+        double[] totals = new double[DIRECTIONS.length];
+        try {
+            List<Future<Long>> results = es.invokeAll(tasks);
+            for (int task = 0; task < results.size(); task++) {
+                totals[taskDirections.get(task).ordinal()] += results.get(task).get();
+            }
+        } catch (InterruptedException e) {
+            log.error("Interrupted during Monte Carlo playouts!");
+        } catch (ExecutionException e) {
+            log.error("Caught execution exception during Monte Carlo playouts: " + e.getMessage());
+        }
+
+        // Every direction that moves runs the same number of playouts, so the totals compare as means
+        Direction best = taskDirections.get(0);
+        for (Direction direction : taskDirections) {
+            if (totals[direction.ordinal()] > totals[best.ordinal()]) {
+                best = direction;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Runs a number of playouts from a moved board
+     * @param movedBoard The board after the root move, before its spawn
+     * @param moveScore The score of the root move
+     * @param count The number of playouts
+     * @param seed The seed of the random state, not 0
+     * @return The sum of the playout scores
+     */
+    private long runPlayouts(long movedBoard, int moveScore, int count, long seed) {
+        long state = seed;
+        long total = 0L;
+        int moves = 0;
+
+        for (int playout = 0; playout < count; playout++) {
+            long board = movedBoard;
+            long score = moveScore;
+            for (int move = 0; move < playoutLength; move++) {
+                // Spawn a 2 or, one time in ten, a 4 on a random empty cell
+                state ^= state >>> 12;
+                state ^= state << 25;
+                state ^= state >>> 27;
+                long random = state * 0x2545F4914F6CDD1DL;
+                int target = (int) ((random >>> 32) % BitBoard.getFreeCellCount(board));
+                long tile = (random & 0xFFFF) % 10 == 0 ? 2L : 1L;
+                for (int shift = 0; ; shift += 4) {
+                    if (((board >>> shift) & 0xF) == 0 && target-- == 0) {
+                        board |= tile << shift;
+                        break;
+                    }
+                }
+
+                long next = board;
+                int bestScore = -1;
+                if (policy == Policy.RANDOM) {
+                    // Mask the legal moves and take a uniformly random one of them
+                    int legal = 0;
+                    for (int code = 0; code < 4; code++) {
+                        if (BitBoard.move(board, DIRECTIONS[code]) != board) {
+                            legal |= 1 << code;
+                        }
+                    }
+                    if (legal != 0) {
+                        for (int skip = (int) (((random >>> 16) & 0xFFFF) % Integer.bitCount(legal)); skip > 0; skip--) {
+                            legal &= legal - 1;
+                        }
+                        Direction direction = DIRECTIONS[Integer.numberOfTrailingZeros(legal)];
+                        next = BitBoard.move(board, direction);
+                        bestScore = BitBoard.getMoveScore(board, direction);
+                    }
+                } else {
+                    // Trying the directions from a random one on, so equal scores are broken at random
+                    int first = (int) ((random >>> 16) & 3);
+                    for (int i = 0; i < 4; i++) {
+                        Direction direction = DIRECTIONS[(first + i) & 3];
+                        long moved = BitBoard.move(board, direction);
+                        if (moved == board) {
+                            continue;
+                        }
+                        int gained = BitBoard.getMoveScore(board, direction);
+                        if (gained > bestScore) {
+                            next = moved;
+                            bestScore = gained;
+                        }
+                    }
+                }
+                if (bestScore < 0) {
+                    // No move left, the game is lost
+                    break;
+                }
+                board = next;
+                score += bestScore;
+                moves++;
+            }
+            total += score;
+        }
+
+        playoutsRun.add(count);
+        playoutMoves.add(moves);
+        return total;
+    }
+
+    private long nextSeed() {
+        // SplitMix64 of a counter, so consecutive seeds give unrelated states
+        long z = seeds.getAndIncrement() * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return z == 0 ? 1L : z;
+    }
+
+    /**
+     * Does a move in the direction returned by the playouts
+     */
+    @Override
+    public void actuateNextMove() {
+        controller.doMove(getNextMove(BitBoard.fromArray(controller.getBoard().getBoard())));
+    }
+
+    /**
+     * Plays the game on the controller to the end
+     */
+    @Override
+    public void solve() {
+        controller.startSolveLoop(() -> {
+            long start = System.currentTimeMillis();
+            log.info("Starting solver ...");
+            while (!controller.getBoard().hasWon() && controller.getBoard().canMove()) {
+                if (GUI_UPDATE_DELAY > 0) {
+                    try {
+                        Thread.sleep(GUI_UPDATE_DELAY);
+                    } catch (InterruptedException e) {
+                        log.error("Interrupted during GUI Update sleep");
+                        break;
+                    }
+                }
+                controller.applyMove(getNextMove(BitBoard.fromArray(controller.getBoard().getBoard())));
+                controller.publishBoard();
+            }
+            log.info("Solver ended after " + ((System.currentTimeMillis() - start) / 1000) + " seconds, " + this);
+        });
+    }
+
+    /**
+     * Plays maxRuns games on the controller and writes their statistics, labelled "montecarlo" by default
+     */
+    public void solveForStatistics() {
+        int runs = Expectimax.NUMBER_OF_STATISTICS_RUNS;
+        log.info("Starting Monte Carlo statistics solver for " + runs + " runs...");
+        StatisticsReport report = new StatisticsReport(System.getProperty("statsLabel", "montecarlo"));
+        for (int i = 1; i <= runs; i++) {
+            controller.reset();
+            long start = System.currentTimeMillis();
+            int moves = 0;
+            int searches = 0;
+            long searchNanos = 0L;
+            while (!controller.getBoard().hasWon() && controller.getBoard().canMove()) {
+                long searchStart = System.nanoTime();
+                Direction directionToMove = getNextMove(BitBoard.fromArray(controller.getBoard().getBoard()));
+                searchNanos += System.nanoTime() - searchStart;
+                searches++;
+                if (controller.doMove(directionToMove)) {
+                    moves++;
+                }
+            }
+            GameDataAppender.endGame();
+
+            Board board = controller.getBoard();
+            GameResult result = new GameResult(i, board.getCurrentScore(),
+                    BitBoard.toValue(BitBoard.getMaxExponent(BitBoard.fromArray(board.getBoard()))),
+                    moves, System.currentTimeMillis() - start, searches, searchNanos);
+            log.info(result);
+            report.add(result);
+        }
+        report.finish();
+        log.info(report);
+        log.info(this);
+        report.write(StatisticsReport.OUTPUT);
+    }
+
+    /**
+     * Shuts down the playout threads
+     */
+    @Override
+    public void shutdown() {
+        es.shutdown();
+        try {
+            es.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            log.error("Interrupted while awaiting ExecutorService shutdown!");
+        }
+    }
+
+    @Override
+    public String toString() {
+        long runs = playoutsRun.sum();
+        return String.format("MonteCarloSolver{policy=%s, playouts=%d, meanPlayoutMoves=%.1f}", policy, runs,
+                runs == 0 ? 0.0 : (double) playoutMoves.sum() / runs);
+    }
+}
@@ -0,0 +1,250 @@
+package org.ntnu.it3105.ai;
+
+import org.ntnu.it3105.game.Direction;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistent store of the best moves of positions searched deeply ahead of time, which the solver plays without
+ * searching. The positions of the first moves repeat across games, so it is used as an opening book, but any
+ * position can be stored.
+ * <p>
+ * The store is a memory-mapped file holding a fixed-size open addressing table keyed by packed board, so all
+ * processes reading it share it through the page cache and nothing is loaded up front. A 64 byte header holds
+ * the magic, version, size, entry count and a hash of the evaluator the moves were searched with. Every slot is
+ * two longs, the board and a data word with the direction code plus one and the depth searched. The empty board
+ * marks an empty slot. Boards are not canonicalized, as the root search prefers some directions over their
+ * symmetric counterparts.
+ * <p>
+ * One writer, see OpeningBookBuilder, appends while any number of threads and processes read. Slots are only
+ * ever claimed, never freed, and the data word is written before the board, so a reader finds an entry complete,
+ * or not at all, or without data, which reads as a miss. A deeper search of a stored board only replaces the
+ * data word. The entry count is also published through a volatile field, which makes entries put by this
+ * instance visible to the threads reading it.
+ */
+public class OpeningBook implements Closeable {
+
+    // "2048BOOK" in little endian
+    private static final long MAGIC = 0x4B4F4F4238343032L;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SIZE_BITS_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+    private static final int EVALUATOR_OFFSET = 20;
+    private static final int MAX_SIZE_BITS = 26;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final boolean writable;
+    private final int sizeBits;
+    private final int mask;
+    private final int maxEntries;
+
+    private volatile int entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private OpeningBook(File file, MappedByteBuffer buffer, boolean writable) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        this.writable = writable;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION) {
+            throw new IOException(file + " is not an opening book of version " + VERSION);
+        }
+        this.sizeBits = buffer.getInt(SIZE_BITS_OFFSET);
+        this.mask = (1 << sizeBits) - 1;
+        // Kept at three quarters full, so probing stays short and always reaches an empty slot
+        this.maxEntries = 3 << (sizeBits - 2);
+        this.entries = buffer.getInt(COUNT_OFFSET);
+    }
+
+    /**
+     * Creates an empty book, replacing the file
+     * @param file The book file
+     * @param sizeBits Log2 of the number of slots, each slot uses 16 bytes
+     * @param evaluator The evaluator the moves are searched with
+     * @return The book, open for writing
+     */
+    public static OpeningBook create(File file, int sizeBits, Evaluator evaluator) throws IOException {
+        if (sizeBits < 4 || sizeBits > MAX_SIZE_BITS) {
+            throw new IllegalArgumentException("Opening book size must be between 2^4 and 2^" + MAX_SIZE_BITS + " slots, got 2^" + sizeBits);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0L);
+            long length = HEADER_BYTES + (16L << sizeBits);
+            raf.setLength(length);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(8, VERSION);
+            buffer.putInt(SIZE_BITS_OFFSET, sizeBits);
+            buffer.putInt(EVALUATOR_OFFSET, evaluatorHash(evaluator));
+            // The magic last, so a half written header is never taken for a book
+            buffer.putLong(0, MAGIC);
+            return new OpeningBook(file, buffer, true);
+        }
+    }
+
+    /**
+     * Opens an existing book
+     * @param file The book file
+     * @param writable Whether moves will be put, only one instance may write to a book at a time
+     * @return The book
+     */
+    public static OpeningBook open(File file, boolean writable) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r")) {
+            if (raf.length() < HEADER_BYTES) {
+                throw new IOException(file + " is not an opening book");
+            }
+            // The mapping stays valid after the file is closed
+            MappedByteBuffer buffer = raf.getChannel().map(writable ? FileChannel.MapMode.READ_WRITE
+                    : FileChannel.MapMode.READ_ONLY, 0L, raf.length());
+            OpeningBook book = new OpeningBook(file, buffer, writable);
+            if (raf.length() != HEADER_BYTES + (16L << book.sizeBits)) {
+                throw new IOException(file + " is truncated");
+            }
+            return book;
+        }
+    }
+
+    /**
+     * Looks up the best move of a board
+     * @param board The packed board
+     * @return The direction, or null if the board is not in the book
+     */
+    public Direction get(long board) {
+        long data = find(board);
+        if (data == 0L) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return DIRECTIONS[(int) (data & 0xFF) - 1];
+    }
+
+    /**
+     * Returns the depth the move of a board was searched to
+     * @param board The packed board
+     * @return The depth, or 0 if the board is not in the book
+     */
+    public int getDepth(long board) {
+        return (int) ((find(board) >>> 8) & 0xFF);
+    }
+
+    /**
+     * Stores the best move of a board, unless it is stored from a search at least as deep
+     * @param board The packed board, not empty
+     * @param direction The best move
+     * @param depth The depth it was searched to
+     * @return False if the book already had a move as deep, or is full
+     */
+    public synchronized boolean put(long board, Direction direction, int depth) {
+        if (!writable) {
+            throw new IllegalStateException("Opening book " + file + " is open read-only");
+        }
+        if (board == 0L) {
+            throw new IllegalArgumentException("The empty board marks empty slots and can't be stored");
+        }
+        long data = ((long) depth << 8) | (direction.directionCode + 1);
+        for (int index = slot(board); ; index = (index + 1) & mask) {
+            int offset = HEADER_BYTES + (index << 4);
+            long key = buffer.getLong(offset);
+            if (key == board) {
+                if (((buffer.getLong(offset + 8) >>> 8) & 0xFF) >= depth) {
+                    return false;
+                }
+                buffer.putLong(offset + 8, data);
+                return true;
+            }
+            if (key == 0L) {
+                if (entries >= maxEntries) {
+                    return false;
+                }
+                buffer.putLong(offset + 8, data);
+                buffer.putLong(offset, board);
+                buffer.putInt(COUNT_OFFSET, entries + 1);
+                entries = entries + 1;
+                return true;
+            }
+        }
+    }
+
+    private long find(long board) {
+        // Reading the volatile count makes the entries put by this instance visible, the count of a read-only
+        // instance is left as it was opened, and says nothing about the entries put by other processes since
+        if (board == 0L || (entries == 0 && writable)) {
+            return 0L;
+        }
+        for (int index = slot(board); ; index = (index + 1) & mask) {
+            int offset = HEADER_BYTES + (index << 4);
+            long key = buffer.getLong(offset);
+            if (key == board) {
+                // 0 if the writer has not got to it yet
+                return buffer.getLong(offset + 8);
+            }
+            if (key == 0L) {
+                return 0L;
+            }
+        }
+    }
+
+    private int slot(long board) {
+        return (int) ((board * 0x9E3779B97F4A7C15L) >>> (64 - sizeBits));
+    }
+
+    /**
+     * Returns the number of boards stored, as counted by the writer of this instance, or as written to the file
+     * when it was opened
+     */
+    public int size() {
+        return writable ? entries : buffer.getInt(COUNT_OFFSET);
+    }
+
+    /**
+     * Returns whether the moves were searched with an evaluator with the same weights, as far as its toString tells
+     * @param evaluator The evaluator of the solver using the book
+     */
+    public boolean isSearchedWith(Evaluator evaluator) {
+        return buffer.getInt(EVALUATOR_OFFSET) == evaluatorHash(evaluator);
+    }
+
+    private static int evaluatorHash(Evaluator evaluator) {
+        return evaluator.toString().hashCode();
+    }
+
+    /**
+     * Writes the entries put so far to the file, readers in other processes see them before that through the
+     * page cache
+     */
+    public void force() {
+        if (writable) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Forces the entries to the file. The mapping itself is released when the book is garbage collected.
+     */
+    @Override
+    public void close() {
+        force();
+    }
+
+    @Override
+    public String toString() {
+        long found = hits.sum();
+        long lookups = found + misses.sum();
+        return String.format("OpeningBook{file=%s, entries=%d, capacity=%d, lookups=%d, hitRate=%.1f%%}", file,
+                size(), maxEntries, lookups, lookups == 0 ? 0.0 : 100.0 * found / lookups);
+    }
+}
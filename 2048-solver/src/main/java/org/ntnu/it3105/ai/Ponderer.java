@@ -0,0 +1,219 @@
+package org.ntnu.it3105.ai;
+
+import org.apache.log4j.Logger;
+import org.ntnu.it3105.game.Direction;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.ntnu.it3105.game.BitBoard.getFreeCellCount;
+
+/**
+ * Speculative search of the next move, run while the solver would otherwise be idle (GUI update delay, redraws).
+ * <p>
+ * After a move the board is known up to the tile spawn, so there are at most 30 positions the next search can
+ * start from. ponder searches them in the background, the 2 spawns (probability 0.9 / free cells each) before
+ * the 4 spawns. getNextMove reuses a finished result when the real position was pondered, waits for it when it
+ * is being searched right now, and otherwise abandons the pondering and searches as usual. Even a miss leaves
+ * the pondered positions in the transposition table.
+ * <p>
+ * Only one search runs on the solver at a time, ponder and getNextMove must be called from the same thread.
+ */
+public class Ponderer {
+
+    private Logger log = Logger.getLogger(Ponderer.class);
+
+    private final Expectimax solver;
+    private final int maxPositions;
+    private final ExecutorService ponderThread;
+
+    // Only touched by the thread calling ponder and getNextMove
+    private Session session;
+    private long hits;
+    private long partialHits;
+    private long misses;
+    private long savedNanos;
+
+    /**
+     * @param solver The solver to ponder with, it must not be searched by anyone else
+     * @param maxPositions The number of post-spawn positions to ponder at most, in order of probability
+     */
+    public Ponderer(Expectimax solver, int maxPositions) {
+        this.solver = solver;
+        this.maxPositions = maxPositions;
+        this.ponderThread = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ponderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts pondering the positions following a move, abandoning any earlier pondering
+     * @param movedBoard The packed board after the move, before the tile spawn
+     */
+    public void ponder(long movedBoard) {
+        stop(session);
+        session = new Session(candidates(movedBoard, maxPositions));
+        session.task = ponderThread.submit(session);
+    }
+
+    /**
+     * Returns the best direction for the board, from the pondered result if there is one
+     * @param board The packed board after the tile spawn
+     * @return The direction to move in
+     */
+    public Direction getNextMove(long board) {
+        Session current = session;
+        session = null;
+
+        Candidate candidate = current == null ? null : current.candidates.get(board);
+        if (candidate != null && candidate.result.isDone()) {
+            stop(current);
+            hits++;
+            savedNanos += candidate.searchNanos;
+            log.debug("Ponder hit, saved " + TimeUnit.NANOSECONDS.toMillis(candidate.searchNanos) + " ms");
+            return candidate.result.join();
+        }
+        if (candidate != null && candidate.startNanos != 0L) {
+            // The position is being searched right now, let it finish but ponder nothing after it
+            long searchedNanos = System.nanoTime() - candidate.startNanos;
+            current.cancelled = true;
+            Direction direction = candidate.result.join();
+            // The ponder thread may have moved on to the next position before it saw the cancellation
+            stop(current);
+            partialHits++;
+            savedNanos += searchedNanos;
+            log.debug("Partial ponder hit, saved " + TimeUnit.NANOSECONDS.toMillis(searchedNanos) + " ms");
+            return direction;
+        }
+
+        stop(current);
+        misses++;
+        return solver.getNextMove(board);
+    }
+
+    /**
+     * Abandons the pondering, and shuts down the ponder thread
+     */
+    public void shutdown() {
+        stop(session);
+        session = null;
+        ponderThread.shutdown();
+    }
+
+    /**
+     * Lists the positions after all spawns of the moved board, most probable first
+     */
+    static long[] candidates(long movedBoard, int maxPositions) {
+        long[] candidates = new long[Math.min(2 * getFreeCellCount(movedBoard), maxPositions)];
+        int count = 0;
+        for (long spawn = 1L; spawn <= 2L; spawn++) {
+            for (int cell = 0; cell < 16 && count < candidates.length; cell++) {
+                int shift = cell << 2;
+                if (((movedBoard >>> shift) & 0xF) == 0) {
+                    candidates[count++] = movedBoard | (spawn << shift);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Cancels a session, aborting the search it is running, and waits until the ponder thread is idle
+     */
+    private void stop(Session session) {
+        if (session == null) {
+            return;
+        }
+        session.cancelled = true;
+        solver.abortSearch();
+        await(session);
+        solver.resumeSearch();
+    }
+
+    private void await(Session session) {
+        try {
+            session.task.get();
+        } catch (InterruptedException e) {
+            log.error("Interrupted while waiting for the ponderer!");
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Caught execution exception while pondering: " + e.getMessage());
+        }
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getPartialHits() {
+        return partialHits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the search time saved by pondering, summed over all moves
+     * @return The saved time in nanoseconds
+     */
+    public long getSavedNanos() {
+        return savedNanos;
+    }
+
+    @Override
+    public String toString() {
+        long moves = hits + partialHits + misses;
+        double hitRate = moves == 0 ? 0.0 : (100.0 * (hits + partialHits)) / moves;
+        double savedPerMove = moves == 0 ? 0.0 : savedNanos / 1e6 / moves;
+        return "Ponderer{hits=" + hits + ", partialHits=" + partialHits + ", misses=" + misses
+                + ", hitRate=" + String.format("%.1f", hitRate) + "%, savedPerMove="
+                + String.format("%.1f", savedPerMove) + " ms}";
+    }
+
+    /**
+     * One pondered position and its result
+     */
+    private static class Candidate {
+
+        final CompletableFuture<Direction> result = new CompletableFuture<>();
+        volatile long startNanos;
+        volatile long searchNanos;
+    }
+
+    /**
+     * Searches the candidates of one move in order until all are done or the session is cancelled
+     */
+    private class Session implements Runnable {
+
+        final Map<Long, Candidate> candidates = new HashMap<>();
+        final long[] boards;
+        volatile boolean cancelled;
+        Future<?> task;
+
+        Session(long[] boards) {
+            this.boards = boards;
+            for (long board : boards) {
+                candidates.put(board, new Candidate());
+            }
+        }
+
+        @Override
+        public void run() {
+            for (long board : boards) {
+                if (cancelled) {
+                    return;
+                }
+                Candidate candidate = candidates.get(board);
+                long start = System.nanoTime();
+                candidate.startNanos = start;
+                Direction direction = solver.ponderMove(board);
+                candidate.searchNanos = System.nanoTime() - start;
+                candidate.result.complete(direction);
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package org.ntnu.it3105.ai;
+
+import org.apache.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one Expectimax solver, exposed as an MXBean so long runs can be watched from JConsole or scraped.
+ * <p>
+ * Node and leaf counts are bumped from the search threads, the per-move figures are recorded once per root
+ * search by the thread asking for the move. Latencies go into a histogram with power of two millisecond buckets,
+ * the percentiles are read from it and are accurate to a bucket. Root imbalance is the slowest of the four
+ * root direction tasks divided by their mean, 1.0 means the directions took equally long.
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+
+    // Upper bounds of the latency buckets in milliseconds, the last bucket takes the rest
+    private static final int BUCKETS = 14;
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private Logger log = Logger.getLogger(SearchMetrics.class);
+
+    final LongAdder nodes = new LongAdder();
+    final LongAdder leaves = new LongAdder();
+
+    private final ExecutorService pool;
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private final LongAdder timeouts = new LongAdder();
+    private ObjectName name;
+
+    // Written by the thread asking for moves, read by JMX
+    private volatile long moves;
+    private volatile long searchNanos;
+    private volatile long searchNodes;
+    private volatile long depthSum;
+    private volatile int lastDepth;
+    private volatile long lastMoveNanos;
+    private volatile long lastMoveNodes;
+    private volatile double lastRootImbalance;
+    private volatile double rootImbalanceSum;
+    private volatile long rootImbalanceMoves;
+
+    /**
+     * @param pool The pool the solver searches in, for the queue depth
+     */
+    public SearchMetrics(ExecutorService pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, under a name unique to this solver
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            name = new ObjectName("org.ntnu.it3105:type=Expectimax,name=solver-" + INSTANCES.incrementAndGet());
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            log.error("Could not register search metrics: " + e.getMessage());
+            name = null;
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server
+     */
+    public void unregister() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            log.error("Could not unregister search metrics: " + e.getMessage());
+        }
+        name = null;
+    }
+
+    /**
+     * Records a finished root search
+     * @param nanos The wall time of the search
+     * @param searchedNodes The nodes expanded by the search
+     * @param depth The depth searched to
+     */
+    synchronized void recordMove(long nanos, long searchedNodes, int depth) {
+        moves++;
+        searchNanos += nanos;
+        searchNodes += searchedNodes;
+        depthSum += depth;
+        lastDepth = depth;
+        lastMoveNanos = nanos;
+        lastMoveNodes = searchedNodes;
+
+        long millis = nanos / 1000000L;
+        int bucket = millis == 0 ? 0 : Math.min(64 - Long.numberOfLeadingZeros(millis), BUCKETS - 1);
+        histogram.incrementAndGet(bucket);
+    }
+
+    /**
+     * Records the wall time of the root direction tasks of one search, skipped directions are 0
+     */
+    synchronized void recordRootTasks(long[] taskNanos) {
+        long max = 0L;
+        long sum = 0L;
+        int count = 0;
+        for (long nanos : taskNanos) {
+            if (nanos > 0) {
+                max = Math.max(max, nanos);
+                sum += nanos;
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        lastRootImbalance = max / ((double) sum / count);
+        rootImbalanceSum += lastRootImbalance;
+        rootImbalanceMoves++;
+    }
+
+    void recordTimeout() {
+        timeouts.increment();
+    }
+
+    @Override
+    public long getMoves() {
+        return moves;
+    }
+
+    @Override
+    public long getNodesSearched() {
+        return nodes.sum();
+    }
+
+    @Override
+    public long getLeafEvaluations() {
+        return leaves.sum();
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        long nanos = searchNanos;
+        return nanos == 0 ? 0.0 : searchNodes / (nanos / 1e9);
+    }
+
+    @Override
+    public double getLastMoveNodesPerSecond() {
+        long nanos = lastMoveNanos;
+        return nanos == 0 ? 0.0 : lastMoveNodes / (nanos / 1e9);
+    }
+
+    @Override
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    @Override
+    public double getAverageDepth() {
+        long count = moves;
+        return count == 0 ? 0.0 : (double) depthSum / count;
+    }
+
+    @Override
+    public double getLastMoveMillis() {
+        return lastMoveNanos / 1e6;
+    }
+
+    @Override
+    public double getAverageMoveMillis() {
+        long count = moves;
+        return count == 0 ? 0.0 : searchNanos / 1e6 / count;
+    }
+
+    @Override
+    public double getMedianMoveMillis() {
+        return percentileMillis(0.5);
+    }
+
+    @Override
+    public double getP99MoveMillis() {
+        return percentileMillis(0.99);
+    }
+
+    @Override
+    public String[] getLatencyBuckets() {
+        String[] buckets = new String[BUCKETS];
+        buckets[0] = "<1ms";
+        for (int bucket = 1; bucket < BUCKETS - 1; bucket++) {
+            buckets[bucket] = "<" + (1L << bucket) + "ms";
+        }
+        buckets[BUCKETS - 1] = ">=" + (1L << (BUCKETS - 2)) + "ms";
+        return buckets;
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] counts = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] = histogram.get(bucket);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the percentile
+     */
+    private double percentileMillis(double percentile) {
+        long[] counts = getLatencyHistogram();
+        long total = 0L;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0L;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return bucket == BUCKETS - 1 ? Double.POSITIVE_INFINITY : 1L << bucket;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public double getLastRootImbalance() {
+        return lastRootImbalance;
+    }
+
+    @Override
+    public double getAverageRootImbalance() {
+        long count = rootImbalanceMoves;
+        return count == 0 ? 0.0 : rootImbalanceSum / count;
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getPoolQueueDepth() {
+        if (pool instanceof ForkJoinPool) {
+            ForkJoinPool forkJoinPool = (ForkJoinPool) pool;
+            return forkJoinPool.getQueuedTaskCount() + forkJoinPool.getQueuedSubmissionCount();
+        }
+        if (pool instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) pool).getQueue().size();
+        }
+        return -1;
+    }
+
+    @Override
+    public int getPoolActiveThreads() {
+        if (pool instanceof ForkJoinPool) {
+            return ((ForkJoinPool) pool).getActiveThreadCount();
+        }
+        if (pool instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) pool).getActiveCount();
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized void reset() {
+        nodes.reset();
+        leaves.reset();
+        timeouts.reset();
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            histogram.set(bucket, 0L);
+        }
+        moves = 0;
+        searchNanos = 0;
+        searchNodes = 0;
+        depthSum = 0;
+        lastDepth = 0;
+        lastMoveNanos = 0;
+        lastMoveNodes = 0;
+        lastRootImbalance = 0.0;
+        rootImbalanceSum = 0.0;
+        rootImbalanceMoves = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchMetrics{moves=" + getMoves() + ", nodes=" + getNodesSearched() + ", leaves=" + getLeafEvaluations()
+                + ", nodesPerSecond=" + String.format("%.0f", getNodesPerSecond())
+                + ", averageDepth=" + String.format("%.2f", getAverageDepth())
+                + ", averageMoveMillis=" + String.format("%.2f", getAverageMoveMillis())
+                + ", p99MoveMillis<=" + getP99MoveMillis()
+                + ", averageRootImbalance=" + String.format("%.2f", getAverageRootImbalance())
+                + ", timeouts=" + getTimeouts() + "}";
+    }
+}
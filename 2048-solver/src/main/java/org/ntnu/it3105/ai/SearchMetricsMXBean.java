@@ -0,0 +1,45 @@
+package org.ntnu.it3105.ai;
+
+/**
+ * Management interface of SearchMetrics, shown in JConsole under org.ntnu.it3105:type=Expectimax
+ */
+public interface SearchMetricsMXBean {
+
+    long getMoves();
+
+    long getNodesSearched();
+
+    long getLeafEvaluations();
+
+    double getNodesPerSecond();
+
+    double getLastMoveNodesPerSecond();
+
+    int getLastDepth();
+
+    double getAverageDepth();
+
+    double getLastMoveMillis();
+
+    double getAverageMoveMillis();
+
+    double getMedianMoveMillis();
+
+    double getP99MoveMillis();
+
+    String[] getLatencyBuckets();
+
+    long[] getLatencyHistogram();
+
+    double getLastRootImbalance();
+
+    double getAverageRootImbalance();
+
+    long getTimeouts();
+
+    long getPoolQueueDepth();
+
+    int getPoolActiveThreads();
+
+    void reset();
+}
@@ -0,0 +1,192 @@
+package org.ntnu.it3105.ai;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, depth-aware transposition table for packed boards, shared between search threads without locks.
+ * <p>
+ * Each slot is three plain longs: the value, a meta word (depth, node type, generation) and a check word
+ * holding board ^ value ^ meta. A reader only accepts a slot when the check word reproduces the board it looks
+ * for, so slots torn by concurrent writers are rejected as misses instead of being locked against.
+ */
+public class TranspositionTable {
+
+    /**
+     * Decides whether a store may overwrite an occupied slot holding a different result
+     */
+    public enum ReplacementPolicy {
+        // Always overwrite the slot
+        ALWAYS,
+        // Keep entries from the current search that are deeper than the new one
+        DEPTH_PREFERRED
+    }
+
+    private static final long OCCUPIED = 1L << 63;
+    private static final long MAX_NODE = 1L << 8;
+    private static final long DEPTH_MASK = 0xFFL;
+    private static final int GENERATION_SHIFT = 16;
+    private static final long GENERATION_MASK = 0xFFL;
+
+    private final long[] checks;
+    private final long[] values;
+    private final long[] metas;
+    private final int indexShift;
+    private final ReplacementPolicy policy;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * Creates a table with 2^sizeBits slots
+     * @param sizeBits Log2 of the number of slots, each slot uses 24 bytes
+     * @param policy The replacement policy
+     */
+    public TranspositionTable(int sizeBits, ReplacementPolicy policy) {
+        if (sizeBits < 1 || sizeBits > 28) {
+            throw new IllegalArgumentException("Transposition table size must be between 2^1 and 2^28 slots, got 2^" + sizeBits);
+        }
+        int size = 1 << sizeBits;
+        this.checks = new long[size];
+        this.values = new long[size];
+        this.metas = new long[size];
+        this.indexShift = 64 - sizeBits;
+        this.policy = policy;
+    }
+
+    /**
+     * Looks up a board searched to at least the given depth
+     * @param board The packed board
+     * @param depth The remaining search depth of the node
+     * @param isMaximizingPlayer Whether the node is a max node
+     * @return The stored value, or NaN if there is no usable entry
+     */
+    public double probe(long board, int depth, boolean isMaximizingPlayer) {
+        return probe(board, depth, isMaximizingPlayer, false);
+    }
+
+    /**
+     * Looks up a board searched to the given depth, or at least to it
+     * @param board The packed board
+     * @param depth The remaining search depth of the node
+     * @param isMaximizingPlayer Whether the node is a max node
+     * @param exactDepth Whether only entries of exactly this depth are usable, as deeper entries may hold values
+     *                   above the bounds of a search to this depth
+     * @return The stored value, or NaN if there is no usable entry
+     */
+    public double probe(long board, int depth, boolean isMaximizingPlayer, boolean exactDepth) {
+        int index = indexOf(board);
+        long meta = metas[index];
+        long value = values[index];
+        long check = checks[index];
+
+        if ((meta & OCCUPIED) == 0) {
+            misses.increment();
+            return Double.NaN;
+        }
+        if ((check ^ value ^ meta) != board) {
+            // Either another board maps to this slot, or the slot is being written right now
+            collisions.increment();
+            misses.increment();
+            return Double.NaN;
+        }
+        long storedDepth = meta & DEPTH_MASK;
+        if (((meta & MAX_NODE) != 0) != isMaximizingPlayer || storedDepth < depth || (exactDepth && storedDepth != depth)) {
+            misses.increment();
+            return Double.NaN;
+        }
+
+        hits.increment();
+        return Double.longBitsToDouble(value);
+    }
+
+    /**
+     * Stores the value of a searched node, subject to the replacement policy
+     * @param board The packed board
+     * @param depth The remaining search depth of the node
+     * @param isMaximizingPlayer Whether the node is a max node
+     * @param value The expectimax value of the node
+     */
+    public void store(long board, int depth, boolean isMaximizingPlayer, double value) {
+        int index = indexOf(board);
+        int currentGeneration = generation.get();
+
+        if (policy == ReplacementPolicy.DEPTH_PREFERRED) {
+            long oldMeta = metas[index];
+            boolean sameBoard = (checks[index] ^ values[index] ^ oldMeta) == board;
+            boolean oldGeneration = ((oldMeta >>> GENERATION_SHIFT) & GENERATION_MASK) != (currentGeneration & GENERATION_MASK);
+            if ((oldMeta & OCCUPIED) != 0 && !sameBoard && !oldGeneration && (oldMeta & DEPTH_MASK) > depth) {
+                return;
+            }
+        }
+
+        long meta = OCCUPIED
+                | ((currentGeneration & GENERATION_MASK) << GENERATION_SHIFT)
+                | (isMaximizingPlayer ? MAX_NODE : 0L)
+                | Math.min(depth, DEPTH_MASK);
+        long bits = Double.doubleToRawLongBits(value);
+
+        values[index] = bits;
+        metas[index] = meta;
+        checks[index] = board ^ bits ^ meta;
+    }
+
+    /**
+     * Marks the start of a new root search, making entries from earlier searches the first to be replaced. A table
+     * shared by concurrent searches is advanced by its owner, once all of them have moved on.
+     */
+    public void newSearch() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Empties all slots and resets the counters
+     */
+    public void clear() {
+        for (int i = 0; i < metas.length; i++) {
+            checks[i] = 0L;
+            values[i] = 0L;
+            metas[i] = 0L;
+        }
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+    }
+
+    private int indexOf(long board) {
+        // Fibonacci hashing, the top bits of the product are well mixed
+        return (int) ((board * 0x9E3779B97F4A7C15L) >>> indexShift);
+    }
+
+    public int size() {
+        return metas.length;
+    }
+
+    public ReplacementPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    @Override
+    public String toString() {
+        long h = getHits();
+        long m = getMisses();
+        double hitRate = h + m == 0 ? 0.0 : (100.0 * h) / (h + m);
+        return "TranspositionTable{size=" + size() + ", policy=" + policy + ", hits=" + h + ", misses=" + m
+                + ", collisions=" + getCollisions() + ", hitRate=" + String.format("%.1f", hitRate) + "%}";
+    }
+}
@@ -0,0 +1,94 @@
+package org.ntnu.it3105.ai;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Named sets of heuristic weights, so heuristics can be compared in runs of the same jar.
+ * <p>
+ * Profiles are read from a properties file with one key per profile and weight, as profile.weight=value with
+ * the weight names of HeuristicEvaluator.WEIGHT_NAMES, where missing weights are 0. The built-in profiles are
+ * in config/profiles.properties, -DweightProfiles=file reads another file instead, and -Dprofile=name picks
+ * the profile the solver uses (default "default"). Every profile is turned into a HeuristicEvaluator once.
+ */
+public class WeightProfiles {
+
+    public static String PROFILES_FILE = System.getProperty("weightProfiles", "");
+    public static String PROFILE = System.getProperty("profile", "default");
+
+    private static final String BUILT_IN = "config/profiles.properties";
+
+    private static Logger log = Logger.getLogger(WeightProfiles.class);
+
+    private static Map<String, HeuristicEvaluator> profiles;
+
+    /**
+     * Reads the profiles of a properties file
+     * @param in The properties
+     * @return The evaluators by profile name
+     */
+    public static Map<String, HeuristicEvaluator> read(Reader in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+
+        Map<String, double[]> weights = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            int index = dot < 0 ? -1 : indexOf(key.substring(dot + 1));
+            if (index < 0) {
+                throw new IOException("Not a profile weight: " + key);
+            }
+            weights.computeIfAbsent(key.substring(0, dot), name -> new double[HeuristicEvaluator.WEIGHT_NAMES.length])[index] =
+                    Double.parseDouble(properties.getProperty(key).trim());
+        }
+
+        Map<String, HeuristicEvaluator> evaluators = new TreeMap<>();
+        for (Map.Entry<String, double[]> profile : weights.entrySet()) {
+            evaluators.put(profile.getKey(), HeuristicEvaluator.fromWeights(profile.getValue()));
+        }
+        return evaluators;
+    }
+
+    /**
+     * Returns the evaluator of a profile of -DweightProfiles, or of the built-in profiles
+     * @param name The profile name
+     * @return The evaluator, shared by all callers
+     * @throws IllegalArgumentException If there is no such profile
+     */
+    public static synchronized HeuristicEvaluator get(String name) {
+        if (profiles == null) {
+            profiles = load();
+        }
+        HeuristicEvaluator evaluator = profiles.get(name);
+        if (evaluator == null) {
+            throw new IllegalArgumentException("No weight profile " + name + ", the profiles are " + profiles.keySet());
+        }
+        return evaluator;
+    }
+
+    private static Map<String, HeuristicEvaluator> load() {
+        try (Reader in = PROFILES_FILE.isEmpty()
+                ? new InputStreamReader(WeightProfiles.class.getClassLoader().getResourceAsStream(BUILT_IN), StandardCharsets.UTF_8)
+                : new InputStreamReader(new FileInputStream(PROFILES_FILE), StandardCharsets.UTF_8)) {
+            Map<String, HeuristicEvaluator> loaded = read(in);
+            log.info("Loaded weight profiles " + loaded.keySet() + " from " + (PROFILES_FILE.isEmpty() ? BUILT_IN : PROFILES_FILE));
+            return loaded;
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Could not load weight profiles: " + e.getMessage(), e);
+        }
+    }
+
+    private static int indexOf(String weightName) {
+        for (int i = 0; i < HeuristicEvaluator.WEIGHT_NAMES.length; i++) {
+            if (HeuristicEvaluator.WEIGHT_NAMES[i].equals(weightName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
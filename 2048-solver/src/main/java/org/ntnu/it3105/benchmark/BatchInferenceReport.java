@@ -0,0 +1,118 @@
+package org.ntnu.it3105.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Direction;
+import org.ntnu.it3105.server.AnnGameServer;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reports moves per second against the batch size K of the batched ANN protocol.
+ * <p>
+ * Starts an AnnGameServer in process and plays it with a client that stands in for the ANN. Every call to the
+ * network is simulated as a fixed latency (the socket round trip, Python and framework overhead) plus a small
+ * cost per board, which is what makes batching pay off. The directions themselves are random legal moves, so every
+ * board answered is a move made.
+ * Arguments: seconds per batch size (default 3), fixed latency per call in microseconds (default 1000), cost
+ * per board in microseconds (default 5), followed by the batch sizes (default 1 2 4 8 16 32 64 128).
+ */
+public class BatchInferenceReport {
+
+    private static final int[] DEFAULT_BATCH_SIZES = {1, 2, 4, 8, 16, 32, 64, 128};
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    public static void main(String[] args) throws Exception {
+        PropertyConfigurator.configure(BatchInferenceReport.class.getClassLoader().getResource("config/log4j.properties"));
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 3L;
+        long callMicros = args.length > 1 ? Long.parseLong(args[1]) : 1000L;
+        long boardMicros = args.length > 2 ? Long.parseLong(args[2]) : 5L;
+        int[] batchSizes = DEFAULT_BATCH_SIZES;
+        if (args.length > 3) {
+            batchSizes = new int[args.length - 3];
+            for (int i = 3; i < args.length; i++) {
+                batchSizes[i - 3] = Integer.parseInt(args[i]);
+            }
+        }
+
+        AnnGameServer server = new AnnGameServer(0, 0, AnnGameServer.BATCH_PORT);
+        Thread serverThread = new Thread(server::run, "ann-server");
+        serverThread.start();
+
+        System.out.println(String.format("%6s %12s %12s %10s", "K", "batches/s", "moves/s", "games"));
+        for (int batchSize : batchSizes) {
+            play(batchSize, TimeUnit.SECONDS.toNanos(seconds), callMicros, boardMicros);
+        }
+
+        server.stop();
+        serverThread.join();
+    }
+
+    private static void play(int batchSize, long durationNanos, long callMicros, long boardMicros) throws IOException {
+        Random random = new Random(42);
+        byte[] directions = new byte[batchSize];
+        long batches = 0;
+        long moves = 0;
+        long games = 0;
+
+        try (Socket socket = new Socket("localhost", AnnGameServer.BATCH_PORT)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(batchSize);
+            out.flush();
+
+            long start = System.nanoTime();
+            while (System.nanoTime() - start < durationNanos) {
+                byte frame = in.readByte();
+                if (frame == 0x04) {
+                    // End of a game: slot and final score
+                    in.readInt();
+                    in.readInt();
+                    games++;
+                    continue;
+                }
+                int boards = in.readInt();
+                for (int i = 0; i < boards; i++) {
+                    directions[i] = (byte) randomLegalMove(in.readLong(), random);
+                }
+
+                // The simulated network evaluates all boards in one call
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(callMicros + boardMicros * boards));
+                out.write(directions, 0, boards);
+                out.flush();
+                batches++;
+                moves += boards;
+            }
+
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("%6d %12.0f %12.0f %10d", batchSize, batches / elapsed,
+                    moves / elapsed, games));
+        }
+    }
+
+    /**
+     * Picks a uniformly random direction that changes the board, the server only sends boards that can move
+     */
+    private static int randomLegalMove(long board, Random random) {
+        int legal = 0;
+        for (Direction direction : DIRECTIONS) {
+            if (BitBoard.move(board, direction) != board) {
+                legal |= 1 << direction.directionCode;
+            }
+        }
+        for (int skip = random.nextInt(Integer.bitCount(legal)); skip > 0; skip--) {
+            legal &= legal - 1;
+        }
+        return Integer.numberOfTrailingZeros(legal);
+    }
+}
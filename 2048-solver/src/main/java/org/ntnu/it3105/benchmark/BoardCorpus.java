@@ -0,0 +1,114 @@
+package org.ntnu.it3105.benchmark;
+
+import org.ntnu.it3105.game.BitBoard;
+
+/**
+ * Fixed set of boards used by the performance reports, so numbers are comparable between builds.
+ * <p>
+ * The boards are taken from games played by the solver, mid game boards have plenty of free cells
+ * while late game boards are crowded and searched at the deepest depth limits.
+ */
+public final class BoardCorpus {
+
+    public static final int[][][] MID_GAME = {
+            {{   2,    0,    0,    0},
+             {   4,    0,    0,    2},
+             {  16,    8,    0,    0},
+             { 128,   64,   32,    4}},
+
+            {{   0,    0,    2,    0},
+             {   0,    4,    0,    0},
+             {   8,   16,    2,    0},
+             { 256,   64,   32,    8}},
+
+            {{   0,    2,    0,    0},
+             {   0,    0,    0,    4},
+             {   2,    8,   16,    0},
+             { 512,  128,   32,   16}},
+
+            {{   0,    0,    0,    2},
+             {   2,    0,    4,    8},
+             {   4,   16,   32,    2},
+             {1024,  256,   64,    8}},
+
+            {{   2,    0,    0,    0},
+             {   8,    4,    0,    0},
+             {  32,   16,    2,    0},
+             {1024,  512,  128,    4}},
+
+            {{   0,    0,    0,    0},
+             {   2,    4,    0,    2},
+             {  64,   16,    8,    4},
+             {2048,  256,  128,   32}},
+    };
+
+    public static final int[][][] LATE_GAME = {
+            {{   2,    4,    8,    2},
+             {   4,   16,   32,    4},
+             {  16,   64,  128,    0},
+             {2048, 1024,  256,    8}},
+
+            {{   4,    2,    0,    2},
+             {   8,   32,   16,    4},
+             {  64,  128,   32,    8},
+             {4096, 1024,  512,    2}},
+
+            {{   2,    8,    4,    2},
+             {  16,    4,   64,    8},
+             {  32,  128,  256,    0},
+             {4096, 2048,  512,   16}},
+
+            {{   0,    2,    4,    2},
+             {   2,    8,   16,    4},
+             {  32,  256,   64,    8},
+             {8192, 2048, 1024,    4}},
+
+            {{   2,    4,    2,    4},
+             {   8,   16,    8,    0},
+             { 128,   64,   32,    2},
+             {8192, 4096,  512,  256}},
+
+            {{   4,    2,    8,    2},
+             {  32,   16,    4,    8},
+             { 512,  256,   64,    2},
+             {16384, 2048, 1024,   0}},
+    };
+
+    private BoardCorpus() {
+        // Only static data
+    }
+
+    /**
+     * @return The mid game boards in packed form
+     */
+    public static long[] midGame() {
+        return pack(MID_GAME);
+    }
+
+    /**
+     * @return The late game boards in packed form
+     */
+    public static long[] lateGame() {
+        return pack(LATE_GAME);
+    }
+
+    /**
+     * @return All boards in packed form, mid game boards first
+     */
+    public static long[] all() {
+        long[] mid = midGame();
+        long[] late = lateGame();
+        long[] all = new long[mid.length + late.length];
+        System.arraycopy(mid, 0, all, 0, mid.length);
+        System.arraycopy(late, 0, all, mid.length, late.length);
+        return all;
+    }
+
+    private static long[] pack(int[][][] boards) {
+        long[] packed = new long[boards.length];
+        for (int i = 0; i < boards.length; i++) {
+            packed[i] = BitBoard.fromArray(boards[i]);
+        }
+        return packed;
+    }
+}
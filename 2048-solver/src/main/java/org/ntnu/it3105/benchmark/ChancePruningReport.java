@@ -0,0 +1,91 @@
+package org.ntnu.it3105.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.ai.TranspositionTable;
+import org.ntnu.it3105.game.Direction;
+
+/**
+ * Reports how many nodes the Star1 chance node pruning saves on the board corpus, and checks it picks the same moves.
+ * <p>
+ * Every board is searched to a fixed depth once without and once with the pruning, first without a transposition
+ * table and then with one, emptied before each pass. With the table the pruned search only uses entries of the
+ * exact depth, so it can search more nodes than without pruning. Depths can be passed as
+ * arguments (default 2 to 5), the weight profile is picked with -Dprofile as usual.
+ */
+public class ChancePruningReport {
+
+    private static final int[] DEFAULT_DEPTHS = {2, 3, 4, 5};
+
+    public static void main(String[] args) {
+        PropertyConfigurator.configure(ChancePruningReport.class.getClassLoader().getResource("config/log4j.properties"));
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        int[] depths = DEFAULT_DEPTHS;
+        if (args.length > 0) {
+            depths = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                depths[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        long[] boards = BoardCorpus.all();
+        Expectimax.USE_TRANSPOSITION_TABLE = false;
+        System.out.println("Evaluator: " + Expectimax.getDefaultEvaluator());
+        System.out.println(String.format("%-6s %-6s %14s %14s %8s %10s %10s %12s", "table", "depth", "nodes",
+                "pruned nodes", "saved", "ms", "pruned ms", "same move"));
+
+        for (boolean useTable : new boolean[]{false, true}) {
+            TranspositionTable table = useTable ? new TranspositionTable(Expectimax.TRANSPOSITION_TABLE_SIZE_BITS,
+                    Expectimax.TRANSPOSITION_TABLE_POLICY) : null;
+            Expectimax solver = new Expectimax(null, 4, null, table, Expectimax.getDefaultEvaluator());
+
+            // Warm up both searches, so the first depth isn't timed in the interpreter
+            for (int pruned = 0; pruned < 2; pruned++) {
+                solver.setChancePruning(pruned == 1);
+                for (long board : boards) {
+                    solver.getNextMove(board, depths[depths.length - 1] - 1);
+                }
+            }
+
+            for (int depth : depths) {
+                long[] nodes = new long[2];
+                long[] millis = new long[2];
+                Direction[][] moves = new Direction[2][boards.length];
+
+                for (int pruned = 0; pruned < 2; pruned++) {
+                    solver.setChancePruning(pruned == 1);
+                    // Same random direction for boards where no direction scores above 0
+                    solver.setSeed(depth);
+                    // Both searches start from an empty table
+                    if (table != null) {
+                        table.clear();
+                    }
+                    long nodesBefore = solver.getNodesSearched();
+                    long start = System.nanoTime();
+                    for (int i = 0; i < boards.length; i++) {
+                        if (table != null) {
+                            table.newSearch();
+                        }
+                        moves[pruned][i] = solver.getNextMove(boards[i], depth);
+                    }
+                    millis[pruned] = (System.nanoTime() - start) / 1000000;
+                    nodes[pruned] = solver.getNodesSearched() - nodesBefore;
+                }
+
+                int sameMoves = 0;
+                for (int i = 0; i < boards.length; i++) {
+                    if (moves[0][i] == moves[1][i]) {
+                        sameMoves++;
+                    }
+                }
+                System.out.println(String.format("%-6s %-6d %14d %14d %7.1f%% %10d %10d %9d/%d", useTable ? "on" : "off",
+                        depth, nodes[0], nodes[1], 100.0 * (nodes[0] - nodes[1]) / nodes[0], millis[0], millis[1],
+                        sameMoves, boards.length));
+            }
+            solver.shutdown();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.ntnu.it3105.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.ntnu.it3105.game.SpawnSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reports the per-move latency spread of the free cell depth buckets against the DepthController.
+ * <p>
+ * Plays the same seeded games once with the depth taken from the free cells and once with the depth picked
+ * for a target latency, and prints latency percentiles and the standard deviation of both. The games part
+ * ways once the two pick different moves. Arguments are the number of games (default 3) and the target per
+ * move in milliseconds (default 10).
+ */
+public class DepthControllerReport {
+
+    public static void main(String[] args) {
+        PropertyConfigurator.configure(DepthControllerReport.class.getClassLoader().getResource("config/log4j.properties"));
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        long targetMillis = args.length > 1 ? Long.parseLong(args[1]) : 10L;
+
+        System.out.println(String.format("%-12s %7s %9s %8s %8s %8s %8s %8s %9s", "mode", "moves", "mean ms",
+                "p50", "p90", "p99", "max", "stdev", "score"));
+        for (long target : new long[]{0L, targetMillis}) {
+            Expectimax.TARGET_MOVE_MILLIS = target;
+            Expectimax solver = new Expectimax(null, 4);
+            List<Double> millis = new ArrayList<>();
+            long score = 0L;
+
+            for (int seed = 1; seed <= games; seed++) {
+                solver.setSeed(seed);
+                Board board = new Board(SpawnSource.seeded(seed));
+                board.initializeNewGame();
+                while (!board.hasWon() && board.canMove()) {
+                    long start = System.nanoTime();
+                    board.doMove(solver.getNextMove(BitBoard.fromArray(board.getBoard())));
+                    millis.add((System.nanoTime() - start) / 1e6);
+                }
+                score += board.getCurrentScore();
+            }
+
+            double mean = millis.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+            double variance = millis.stream().mapToDouble(m -> (m - mean) * (m - mean)).average().orElse(0.0);
+            Collections.sort(millis);
+            System.out.println(String.format("%-12s %7d %9.2f %8.2f %8.2f %8.2f %8.2f %8.2f %9d",
+                    target == 0 ? "buckets" : "target " + target, millis.size(), mean, percentile(millis, 0.5),
+                    percentile(millis, 0.9), percentile(millis, 0.99), millis.get(millis.size() - 1),
+                    Math.sqrt(variance), score / games));
+            if (solver.getDepthController() != null) {
+                System.out.println("  " + solver.getDepthController());
+            }
+            solver.shutdown();
+        }
+    }
+
+    private static double percentile(List<Double> sorted, double percentile) {
+        return sorted.get(Math.max((int) Math.ceil(percentile * sorted.size()) - 1, 0));
+    }
+}
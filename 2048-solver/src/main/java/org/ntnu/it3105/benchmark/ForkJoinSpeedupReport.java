@@ -0,0 +1,94 @@
+package org.ntnu.it3105.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.ai.Expectimax;
+
+/**
+ * Reports the speed-up of the fork/join search over the board corpus for 1 to N threads.
+ * <p>
+ * Thread counts can be passed as arguments, by default powers of two up to the number of available processors
+ * are measured. The fixed four-task pool is measured at the highest thread count for comparison. The
+ * transposition table is disabled, so every pass does the same amount of work, and the best of REPETITIONS
+ * timed passes is reported.
+ */
+public class ForkJoinSpeedupReport {
+
+    private static final int REPETITIONS = 5;
+
+    public static void main(String[] args) {
+        PropertyConfigurator.configure(ForkJoinSpeedupReport.class.getClassLoader().getResource("config/log4j.properties"));
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        int[] threadCounts;
+        if (args.length > 0) {
+            threadCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                threadCounts[i] = Integer.parseInt(args[i]);
+            }
+        } else {
+            int processors = Runtime.getRuntime().availableProcessors();
+            int count = 1;
+            while ((1 << count) <= processors) count++;
+            threadCounts = new int[count];
+            for (int i = 0; i < count; i++) {
+                threadCounts[i] = 1 << i;
+            }
+            threadCounts[count - 1] = processors;
+        }
+
+        long[] boards = BoardCorpus.all();
+        Expectimax.USE_TRANSPOSITION_TABLE = false;
+
+        // Warm up the JIT before the single threaded baseline is taken
+        measure(boards, true, threadCounts[threadCounts.length - 1]);
+
+        System.out.println(String.format("%-16s %8s %10s %10s %14s", "mode", "threads", "ms", "speed-up", "nodes/s"));
+        double baseline = 0.0;
+        for (int threads : threadCounts) {
+            double millis = measure(boards, true, threads);
+            if (baseline == 0.0) {
+                baseline = millis;
+            }
+            print("fork/join", threads, millis, baseline);
+        }
+        print("fixed pool", threadCounts[threadCounts.length - 1],
+                measure(boards, false, threadCounts[threadCounts.length - 1]), baseline);
+    }
+
+    private static long lastNodes;
+
+    /**
+     * Searches the corpus once to warm up, then REPETITIONS times timed
+     * @return The time of the fastest timed pass in milliseconds
+     */
+    private static double measure(long[] boards, boolean forkJoin, int threads) {
+        Expectimax.USE_FORK_JOIN = forkJoin;
+        Expectimax.SEARCH_THREADS = threads;
+        Expectimax solver = new Expectimax(null, 4);
+
+        for (long board : boards) {
+            solver.getNextMove(board);
+        }
+
+        double millis = Double.MAX_VALUE;
+        for (int i = 0; i < REPETITIONS; i++) {
+            long nodesBefore = solver.getNodesSearched();
+            long start = System.nanoTime();
+            for (long board : boards) {
+                solver.getNextMove(board);
+            }
+            millis = Math.min(millis, (System.nanoTime() - start) / 1e6);
+            lastNodes = solver.getNodesSearched() - nodesBefore;
+        }
+
+        solver.shutdown();
+        return millis;
+    }
+
+    private static void print(String mode, int threads, double millis, double baseline) {
+        System.out.println(String.format("%-16s %8d %10.1f %9.2fx %14.0f",
+                mode, threads, millis, baseline / millis, lastNodes / (millis / 1000.0)));
+    }
+}
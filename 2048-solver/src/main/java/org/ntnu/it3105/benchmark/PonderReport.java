@@ -0,0 +1,59 @@
+package org.ntnu.it3105.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.ai.Ponderer;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.ntnu.it3105.game.Direction;
+
+/**
+ * Reports the ponder hit rate and the search latency it saves.
+ * <p>
+ * Plays the given number of moves twice, once without and once with pondering, and sleeps for a fixed idle
+ * window after every move in place of the GUI update delay. Arguments are the number of moves (default 200)
+ * and the idle window in milliseconds (default 50).
+ */
+public class PonderReport {
+
+    public static void main(String[] args) throws InterruptedException {
+        PropertyConfigurator.configure(PonderReport.class.getClassLoader().getResource("config/log4j.properties"));
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        int moves = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long idleMillis = args.length > 1 ? Long.parseLong(args[1]) : 50L;
+
+        System.out.println(String.format("%-10s %8s %14s %s", "mode", "moves", "ms per move", "ponderer"));
+        for (boolean ponder : new boolean[]{false, true}) {
+            Expectimax solver = new Expectimax(null, 4);
+            Ponderer ponderer = ponder ? new Ponderer(solver, Expectimax.PONDER_POSITIONS) : null;
+
+            Board board = new Board();
+            board.initializeNewGame();
+            long searchNanos = 0L;
+            int played = 0;
+            while (played < moves && !board.hasWon() && board.canMove()) {
+                long packed = BitBoard.fromArray(board.getBoard());
+                long start = System.nanoTime();
+                Direction direction = ponder ? ponderer.getNextMove(packed) : solver.getNextMove(packed);
+                searchNanos += System.nanoTime() - start;
+
+                board.doMove(direction);
+                if (ponder) {
+                    ponderer.ponder(BitBoard.move(packed, direction));
+                }
+                played++;
+                Thread.sleep(idleMillis);
+            }
+
+            System.out.println(String.format("%-10s %8d %14.2f %s", ponder ? "ponder" : "baseline", played,
+                    searchNanos / 1e6 / Math.max(played, 1), ponder ? ponderer : "-"));
+            if (ponder) {
+                ponderer.shutdown();
+            }
+            solver.shutdown();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.ntnu.it3105.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.game.Direction;
+
+/**
+ * Reports how many nodes the Expectimax probability cutoff saves for a range of thresholds on the board corpus.
+ * <p>
+ * The transposition table is disabled so the node counts only reflect the cutoff. Thresholds can be passed
+ * as arguments, the first one is used as the baseline the node savings and move agreement are measured against.
+ */
+public class ProbabilityCutoffReport {
+
+    private static final double[] DEFAULT_THRESHOLDS = {0.0, 0.00001, 0.0001, 0.001, 0.01};
+
+    public static void main(String[] args) {
+        PropertyConfigurator.configure(ProbabilityCutoffReport.class.getClassLoader().getResource("config/log4j.properties"));
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        double[] thresholds = DEFAULT_THRESHOLDS;
+        if (args.length > 0) {
+            thresholds = new double[args.length];
+            for (int i = 0; i < args.length; i++) {
+                thresholds[i] = Double.parseDouble(args[i]);
+            }
+        }
+
+        long[] boards = BoardCorpus.all();
+        Expectimax.USE_TRANSPOSITION_TABLE = false;
+        Expectimax solver = new Expectimax(null, 4);
+
+        long baselineNodes = 0;
+        Direction[] baselineMoves = new Direction[boards.length];
+
+        System.out.println(String.format("%-12s %14s %10s %10s %12s", "threshold", "nodes", "saved", "ms", "same move"));
+        for (int t = 0; t < thresholds.length; t++) {
+            solver.setProbabilityThreshold(thresholds[t]);
+            long nodesBefore = solver.getNodesSearched();
+            long start = System.nanoTime();
+            int sameMoves = 0;
+
+            for (int i = 0; i < boards.length; i++) {
+                Direction move = solver.getNextMove(boards[i]);
+                if (t == 0) {
+                    baselineMoves[i] = move;
+                }
+                if (move == baselineMoves[i]) {
+                    sameMoves++;
+                }
+            }
+
+            long nodes = solver.getNodesSearched() - nodesBefore;
+            long millis = (System.nanoTime() - start) / 1000000;
+            if (t == 0) {
+                baselineNodes = nodes;
+            }
+            double saved = baselineNodes == 0 ? 0.0 : 100.0 * (baselineNodes - nodes) / baselineNodes;
+
+            System.out.println(String.format("%-12s %14d %9.1f%% %10d %9d/%d",
+                    thresholds[t], nodes, saved, millis, sameMoves, boards.length));
+        }
+
+        solver.shutdown();
+    }
+}
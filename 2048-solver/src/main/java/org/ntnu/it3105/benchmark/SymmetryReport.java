@@ -0,0 +1,86 @@
+package org.ntnu.it3105.benchmark;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.ntnu.it3105.game.BoardSymmetry;
+import org.ntnu.it3105.game.Direction;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Measures how much symmetry canonicalization shrinks the number of distinct positions a search visits.
+ * <p>
+ * Plays real games with the solver, and at every move enumerates the full expectimax tree below the position
+ * to a fixed depth, counting distinct boards as they are and distinct canonical boards.
+ * Arguments: number of games (default 3) and enumeration depth (default 4).
+ */
+public class SymmetryReport {
+
+    private static long rawTotal;
+    private static long canonicalTotal;
+    private static long treeNodes;
+
+    public static void main(String[] args) {
+        PropertyConfigurator.configure(SymmetryReport.class.getClassLoader().getResource("config/log4j.properties"));
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        Expectimax solver = new Expectimax(null, 4);
+        long moves = 0;
+
+        for (int game = 0; game < games; game++) {
+            Board board = new Board();
+            board.initializeNewGame();
+            while (!board.hasWon() && board.canMove()) {
+                long packed = BitBoard.fromArray(board.getBoard());
+                Set<Long> raw = new HashSet<>();
+                Set<Long> canonical = new HashSet<>();
+                enumerate(packed, depth, true, raw, canonical);
+                rawTotal += raw.size();
+                canonicalTotal += canonical.size();
+                moves++;
+
+                board.doMove(solver.getNextMove(packed));
+            }
+            System.out.println("Game " + game + " ended with score " + board.getCurrentScore());
+        }
+        solver.shutdown();
+
+        System.out.println(String.format("Moves: %d, depth: %d, tree nodes per move: %.0f", moves, depth, treeNodes / (double) moves));
+        System.out.println(String.format("Distinct positions per move: %.0f, distinct canonical positions per move: %.0f",
+                rawTotal / (double) moves, canonicalTotal / (double) moves));
+        System.out.println(String.format("Canonicalization keeps %.1f%% of the distinct positions",
+                100.0 * canonicalTotal / rawTotal));
+    }
+
+    private static void enumerate(long board, int depth, boolean isMaximizingPlayer, Set<Long> raw, Set<Long> canonical) {
+        treeNodes++;
+        raw.add(board);
+        canonical.add(BoardSymmetry.canonicalize(board));
+        if (depth == 0) {
+            return;
+        }
+        if (isMaximizingPlayer) {
+            for (Direction direction : Direction.values()) {
+                long moved = BitBoard.move(board, direction);
+                if (moved != board) {
+                    enumerate(moved, depth - 1, false, raw, canonical);
+                }
+            }
+        } else {
+            for (int cell = 0; cell < 16; cell++) {
+                int shift = cell << 2;
+                if (((board >>> shift) & 0xF) == 0) {
+                    enumerate(board | (1L << shift), depth - 1, true, raw, canonical);
+                    enumerate(board | (2L << shift), depth - 1, true, raw, canonical);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.ntnu.it3105.data;
+
+import org.ntnu.it3105.game.BitBoard;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Converts game_data.txt to the binary GameRecordFormat.
+ * <p>
+ * Every line holds the 16 tile values of a board row by row followed by the direction code, and a line with
+ * a single "-" ends a game. The text carries no scores, so the records store the board, the direction and
+ * the game id counted from the "-" lines.
+ * <p>
+ * Usage: GameDataConverter [input, default game_data.txt] [output, default game_data.bin]
+ */
+public class GameDataConverter {
+
+    /**
+     * Converts a text file, appending to the output if it exists
+     * @return The number of records written
+     */
+    public static long convert(File input, File output) throws IOException {
+        long records = 0;
+        int gameId = 0;
+        int lineNumber = 0;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(input), Charset.defaultCharset()));
+             GameRecordWriter out = new GameRecordWriter(output, GameRecordFormat.FLAG_GAME_ID)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.equals("-")) {
+                    gameId++;
+                    continue;
+                }
+
+                String[] fields = line.split(",");
+                if (fields.length != 17) {
+                    throw new IOException(input + ":" + lineNumber + ": expected 17 fields, got " + fields.length);
+                }
+                long board = 0L;
+                for (int cell = 0; cell < 16; cell++) {
+                    board |= (long) BitBoard.toExponent(Integer.parseInt(fields[cell])) << (cell << 2);
+                }
+                out.write(board, Integer.parseInt(fields[16]), 0, gameId);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File input = new File(args.length > 0 ? args[0] : "game_data.txt");
+        File output = new File(args.length > 1 ? args[1] : "game_data.bin");
+
+        long start = System.currentTimeMillis();
+        long records = convert(input, output);
+        System.out.println("Converted " + records + " records from " + input + " (" + input.length() + " bytes) to "
+                + output + " (" + output.length() + " bytes) in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -0,0 +1,85 @@
+package org.ntnu.it3105.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Binary format for game data, the compact alternative to the CSV lines of game_data.txt.
+ * <p>
+ * The file starts with a 16 byte header followed by fixed-size records, all little endian so the file can be
+ * mapped directly by numpy (np.memmap with a structured dtype) or by GameRecordReader:
+ * <pre>
+ * header:  int magic "2048", short version, short flags, int record size, int reserved
+ * record:  long packed board, byte direction code, [int score], [int game id]
+ * </pre>
+ * The board is packed as in BitBoard, 4 bits of tile exponent per cell with cell (row, col) at bit 4 * (4 * row + col).
+ * The score and game id fields are only present when their flag is set, giving records of 9, 13 or 17 bytes
+ * against about 60 bytes of text per sample.
+ */
+public final class GameRecordFormat {
+
+    public static final int MAGIC = 0x38343032;
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    public static final short FLAG_SCORE = 1;
+    public static final short FLAG_GAME_ID = 2;
+
+    static final int BOARD_OFFSET = 0;
+    static final int DIRECTION_OFFSET = 8;
+    static final int SCORE_OFFSET = 9;
+
+    private GameRecordFormat() {
+        // Only constants and header helpers
+    }
+
+    /**
+     * Returns the size of a record with the given flags
+     */
+    public static int recordSize(short flags) {
+        int size = 9;
+        if ((flags & FLAG_SCORE) != 0) size += 4;
+        if ((flags & FLAG_GAME_ID) != 0) size += 4;
+        return size;
+    }
+
+    /**
+     * Returns the offset of the game id within a record with the given flags
+     */
+    static int gameIdOffset(short flags) {
+        return (flags & FLAG_SCORE) != 0 ? SCORE_OFFSET + 4 : SCORE_OFFSET;
+    }
+
+    /**
+     * Builds the header of a file with the given flags
+     */
+    static ByteBuffer header(short flags) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+        header.putInt(MAGIC).putShort(VERSION).putShort(flags).putInt(recordSize(flags)).putInt(0);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Validates a header and returns the flags it holds
+     * @param header The first HEADER_SIZE bytes of the file, in BYTE_ORDER
+     * @return The flags
+     * @throws IOException If the header is not a valid game record header
+     */
+    static short readFlags(ByteBuffer header) throws IOException {
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a game record file");
+        }
+        short version = header.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported game record version " + version);
+        }
+        short flags = header.getShort();
+        if (header.getInt() != recordSize(flags)) {
+            throw new IOException("Game record size does not match its flags");
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,158 @@
+package org.ntnu.it3105.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped, random access reader for files in the GameRecordFormat.
+ * <p>
+ * A single mapping is limited to 2 GB, so the file is mapped in segments of whole records and a record index
+ * is turned into a segment and an offset. Nothing is parsed or allocated per record. The reader only sees the
+ * records present when it was opened. It is safe to use from several threads, since it only does absolute reads.
+ */
+public class GameRecordReader implements Closeable {
+
+    /**
+     * Receives the records of forEach, fields not stored by the file are 0
+     */
+    public interface RecordVisitor {
+        void visit(long index, long board, int directionCode, int score, int gameId);
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long recordsPerSegment;
+    private final long size;
+    private final short flags;
+    private final int recordSize;
+    private final int gameIdOffset;
+
+    /**
+     * Opens and maps a game record file
+     * @param file The file to read
+     * @throws IOException If the file cannot be read or is not a game record file
+     */
+    public GameRecordReader(File file) throws IOException {
+        this(file, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxSegmentBytes The largest mapping to create, smaller values are only useful for testing
+     */
+    GameRecordReader(File file, int maxSegmentBytes) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        ByteBuffer header = ByteBuffer.allocate(GameRecordFormat.HEADER_SIZE).order(GameRecordFormat.BYTE_ORDER);
+        channel.read(header, 0);
+        header.flip();
+        try {
+            this.flags = GameRecordFormat.readFlags(header);
+        } catch (IOException e) {
+            channel.close();
+            throw new IOException(file + ": " + e.getMessage());
+        }
+        this.recordSize = GameRecordFormat.recordSize(flags);
+        this.gameIdOffset = GameRecordFormat.gameIdOffset(flags);
+        this.size = (channel.size() - GameRecordFormat.HEADER_SIZE) / recordSize;
+        this.recordsPerSegment = maxSegmentBytes / recordSize;
+
+        int segmentCount = (int) ((size + recordsPerSegment - 1) / recordsPerSegment);
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long first = i * recordsPerSegment;
+            long records = Math.min(recordsPerSegment, size - first);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, GameRecordFormat.HEADER_SIZE + first * recordSize,
+                    records * recordSize);
+            segments[i].order(GameRecordFormat.BYTE_ORDER);
+        }
+    }
+
+    /**
+     * Returns the number of records in the file
+     */
+    public long size() {
+        return size;
+    }
+
+    public boolean hasScore() {
+        return (flags & GameRecordFormat.FLAG_SCORE) != 0;
+    }
+
+    public boolean hasGameId() {
+        return (flags & GameRecordFormat.FLAG_GAME_ID) != 0;
+    }
+
+    /**
+     * Returns the packed board of a record
+     */
+    public long getBoard(long index) {
+        return segment(index).getLong(offset(index) + GameRecordFormat.BOARD_OFFSET);
+    }
+
+    /**
+     * Returns the direction code of a record
+     */
+    public int getDirectionCode(long index) {
+        return segment(index).get(offset(index) + GameRecordFormat.DIRECTION_OFFSET);
+    }
+
+    /**
+     * Returns the score of a record, or 0 if the file stores no scores
+     */
+    public int getScore(long index) {
+        return hasScore() ? segment(index).getInt(offset(index) + GameRecordFormat.SCORE_OFFSET) : 0;
+    }
+
+    /**
+     * Returns the game id of a record, or 0 if the file stores no game ids
+     */
+    public int getGameId(long index) {
+        return hasGameId() ? segment(index).getInt(offset(index) + gameIdOffset) : 0;
+    }
+
+    /**
+     * Visits all records in order
+     */
+    public void forEach(RecordVisitor visitor) {
+        forEach(0, size, visitor);
+    }
+
+    /**
+     * Visits the records in [from, to) in order, e.g. one range per thread
+     */
+    public void forEach(long from, long to, RecordVisitor visitor) {
+        for (long index = from; index < to; index++) {
+            ByteBuffer segment = segment(index);
+            int offset = offset(index);
+            visitor.visit(index,
+                    segment.getLong(offset + GameRecordFormat.BOARD_OFFSET),
+                    segment.get(offset + GameRecordFormat.DIRECTION_OFFSET),
+                    hasScore() ? segment.getInt(offset + GameRecordFormat.SCORE_OFFSET) : 0,
+                    hasGameId() ? segment.getInt(offset + gameIdOffset) : 0);
+        }
+    }
+
+    private ByteBuffer segment(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + size);
+        }
+        return segments[(int) (index / recordsPerSegment)];
+    }
+
+    private int offset(long index) {
+        return (int) (index % recordsPerSegment) * recordSize;
+    }
+
+    /**
+     * Closes the file, the mappings stay valid until they are garbage collected
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,89 @@
+package org.ntnu.it3105.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes game records in the GameRecordFormat. Not thread safe.
+ */
+public class GameRecordWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final short flags;
+    private final int gameIdOffset;
+    private final int recordSize;
+
+    /**
+     * Opens a file for writing, appending to it if it already holds records with the same flags
+     * @param file The file to write
+     * @param flags The optional fields to store, see GameRecordFormat
+     * @throws IOException If the file cannot be opened, or holds records with other flags
+     */
+    public GameRecordWriter(File file, short flags) throws IOException {
+        this.flags = flags;
+        this.recordSize = GameRecordFormat.recordSize(flags);
+        this.gameIdOffset = GameRecordFormat.gameIdOffset(flags);
+        this.buffer = ByteBuffer.allocate(recordSize * 4096).order(GameRecordFormat.BYTE_ORDER);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (channel.size() == 0) {
+            channel.write(GameRecordFormat.header(flags));
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(GameRecordFormat.HEADER_SIZE).order(GameRecordFormat.BYTE_ORDER);
+            channel.read(header, 0);
+            header.flip();
+            if (GameRecordFormat.readFlags(header) != flags) {
+                channel.close();
+                throw new IOException(file + " holds game records with other fields");
+            }
+            // Drop a partly written record left by a crash
+            long records = (channel.size() - GameRecordFormat.HEADER_SIZE) / recordSize;
+            channel.truncate(GameRecordFormat.HEADER_SIZE + records * recordSize);
+            channel.position(channel.size());
+        }
+    }
+
+    /**
+     * Writes one record, the fields not stored by this file are ignored
+     * @param board The packed board, see BitBoard
+     * @param directionCode The direction code of the move made from the board
+     * @param score The score before the move
+     * @param gameId The id of the game the record belongs to
+     * @throws IOException If the write fails
+     */
+    public void write(long board, int directionCode, int score, int gameId) throws IOException {
+        if (buffer.remaining() < recordSize) {
+            flush();
+        }
+        int start = buffer.position();
+        buffer.putLong(board);
+        buffer.put((byte) directionCode);
+        if ((flags & GameRecordFormat.FLAG_SCORE) != 0) {
+            buffer.putInt(score);
+        }
+        if ((flags & GameRecordFormat.FLAG_GAME_ID) != 0) {
+            buffer.putInt(start + gameIdOffset, gameId);
+            buffer.position(start + recordSize);
+        }
+    }
+
+    /**
+     * Writes the buffered records to the file
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
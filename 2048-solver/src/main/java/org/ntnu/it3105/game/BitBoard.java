@@ -0,0 +1,375 @@
+package org.ntnu.it3105.game;
+
+import static org.ntnu.it3105.game.Board.BOARD_SIZE;
+import static org.ntnu.it3105.game.Board.TARGET_VALUE;
+import static org.ntnu.it3105.precompute.Precomputer.COLUMN_DOWN;
+import static org.ntnu.it3105.precompute.Precomputer.COLUMN_UP;
+import static org.ntnu.it3105.precompute.Precomputer.ROW_LEFT;
+import static org.ntnu.it3105.precompute.Precomputer.ROW_RIGHT;
+import static org.ntnu.it3105.precompute.Precomputer.SCORE_LEFT;
+import static org.ntnu.it3105.precompute.Precomputer.SCORE_RIGHT;
+
+/**
+ * Static board engine operating on a packed 64-bit representation of the board.
+ * <p>
+ * Each of the 16 cells is stored as a 4-bit exponent (0 is an empty cell, 1 is a 2-tile, 2 is a 4-tile and so on),
+ * so a board is a single long and moving it never allocates. Cell (row, col) is found at bit offset
+ * 4 * (4 * row + col), i.e. every row occupies 16 consecutive bits with column 0 in the lowest nibble.
+ * <p>
+ * Since an exponent can be at most 15, the largest representable tile is 32768 (the TARGET_VALUE).
+ * Moves are executed through the primitive row transition tables in Precomputer.
+ */
+public final class BitBoard {
+
+    public static final long ROW_MASK = 0xFFFFL;
+    public static final long COLUMN_MASK = 0x000F000F000F000FL;
+
+    private static final double[][] SNAKE_WEIGHTS =
+            {{ 1,  128,  256, 32768},
+            {  2,   64,  512,  16384},
+            {  4,   32,  1024,  8192},
+            {  8,   16,  2048,  4096}};
+
+    private static final double[][] GRADIENT_WEIGHTS =
+            {{ 8, 16, 32,128},
+            {  4,  8, 24, 64},
+            {  2,  4, 16, 32},
+            {  1,  2,  8, 16}};
+
+    private BitBoard() {
+        // Only static helpers
+    }
+
+    /* ================ CONVERSION =================== */
+
+    /**
+     * Packs a board matrix into a long
+     * @param board The board matrix
+     * @return The packed board
+     */
+    public static long fromArray(int[][] board) {
+        long packed = 0L;
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                packed = setCell(packed, row, col, toExponent(board[row][col]));
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks a board into a freshly allocated board matrix
+     * @param board The packed board
+     * @return The board matrix
+     */
+    public static int[][] toArray(long board) {
+        int[][] unpacked = new int[BOARD_SIZE][BOARD_SIZE];
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                unpacked[row][col] = toValue(getCell(board, row, col));
+            }
+        }
+        return unpacked;
+    }
+
+    /**
+     * Converts a tile value to its exponent
+     * @param value The tile value (0, 2, 4, 8 ...)
+     * @return The exponent (0, 1, 2, 3 ...)
+     */
+    public static int toExponent(int value) {
+        return value == 0 ? 0 : Integer.numberOfTrailingZeros(value);
+    }
+
+    /**
+     * Converts an exponent to its tile value
+     * @param exponent The exponent (0, 1, 2, 3 ...)
+     * @return The tile value (0, 2, 4, 8 ...)
+     */
+    public static int toValue(int exponent) {
+        return exponent == 0 ? 0 : 1 << exponent;
+    }
+
+    /* ================ CELL ACCESS =================== */
+
+    /**
+     * Returns the exponent stored in a cell
+     */
+    public static int getCell(long board, int row, int col) {
+        return (int) ((board >>> (((row << 2) + col) << 2)) & 0xF);
+    }
+
+    /**
+     * Returns a copy of the board with the exponent of a cell replaced
+     */
+    public static long setCell(long board, int row, int col, int exponent) {
+        int shift = ((row << 2) + col) << 2;
+        return (board & ~(0xFL << shift)) | ((long) exponent << shift);
+    }
+
+    /**
+     * Returns a row as a 16-bit packed row, column 0 in the lowest nibble
+     */
+    public static int getRow(long board, int row) {
+        return (int) ((board >>> (row << 4)) & ROW_MASK);
+    }
+
+    /**
+     * Returns a column as a 16-bit packed row, row 0 in the lowest nibble
+     */
+    public static int getColumn(long board, int col) {
+        long c = (board >>> (col << 2)) & COLUMN_MASK;
+        return (int) ((c | (c >>> 12) | (c >>> 24) | (c >>> 36)) & ROW_MASK);
+    }
+
+    /**
+     * Spreads a 16-bit packed row into a column of an otherwise empty board, the inverse of getColumn
+     */
+    public static long spreadColumn(int packedRow, int col) {
+        long r = packedRow & ROW_MASK;
+        long c = (r | (r << 12) | (r << 24) | (r << 36)) & COLUMN_MASK;
+        return c << (col << 2);
+    }
+
+    /**
+     * Reverses the order of the four nibbles in a packed row
+     */
+    public static int reverseRow(int packedRow) {
+        return ((packedRow >>> 12) & 0x000F) | ((packedRow >>> 4) & 0x00F0)
+                | ((packedRow << 4) & 0x0F00) | ((packedRow << 12) & 0xF000);
+    }
+
+    /* ================ MOVEMENT =================== */
+
+    /**
+     * Moves the board in the parameter direction, using one row transition table lookup per row or column
+     * @param board Packed board to move
+     * @param direction Direction to move in
+     * @return The packed board in moved state
+     */
+    public static long move(long board, Direction direction) {
+        switch (direction) {
+            case UP:
+                return COLUMN_UP[getColumn(board, 0)]
+                        | COLUMN_UP[getColumn(board, 1)] << 4
+                        | COLUMN_UP[getColumn(board, 2)] << 8
+                        | COLUMN_UP[getColumn(board, 3)] << 12;
+            case DOWN:
+                return COLUMN_DOWN[getColumn(board, 0)]
+                        | COLUMN_DOWN[getColumn(board, 1)] << 4
+                        | COLUMN_DOWN[getColumn(board, 2)] << 8
+                        | COLUMN_DOWN[getColumn(board, 3)] << 12;
+            case RIGHT:
+                return (long) ROW_RIGHT[(int) (board & ROW_MASK)]
+                        | (long) ROW_RIGHT[(int) ((board >>> 16) & ROW_MASK)] << 16
+                        | (long) ROW_RIGHT[(int) ((board >>> 32) & ROW_MASK)] << 32
+                        | (long) ROW_RIGHT[(int) (board >>> 48)] << 48;
+            default:
+                return (long) ROW_LEFT[(int) (board & ROW_MASK)]
+                        | (long) ROW_LEFT[(int) ((board >>> 16) & ROW_MASK)] << 16
+                        | (long) ROW_LEFT[(int) ((board >>> 32) & ROW_MASK)] << 32
+                        | (long) ROW_LEFT[(int) (board >>> 48)] << 48;
+        }
+    }
+
+    /**
+     * Returns the score gained by moving the board in the parameter direction
+     * @param board Packed board to move
+     * @param direction Direction to move in
+     * @return The sum of all merged tile values
+     */
+    public static int getMoveScore(long board, Direction direction) {
+        switch (direction) {
+            case UP:
+                return SCORE_LEFT[getColumn(board, 0)] + SCORE_LEFT[getColumn(board, 1)]
+                        + SCORE_LEFT[getColumn(board, 2)] + SCORE_LEFT[getColumn(board, 3)];
+            case DOWN:
+                return SCORE_RIGHT[getColumn(board, 0)] + SCORE_RIGHT[getColumn(board, 1)]
+                        + SCORE_RIGHT[getColumn(board, 2)] + SCORE_RIGHT[getColumn(board, 3)];
+            case RIGHT:
+                return SCORE_RIGHT[getRow(board, 0)] + SCORE_RIGHT[getRow(board, 1)]
+                        + SCORE_RIGHT[getRow(board, 2)] + SCORE_RIGHT[getRow(board, 3)];
+            default:
+                return SCORE_LEFT[getRow(board, 0)] + SCORE_LEFT[getRow(board, 1)]
+                        + SCORE_LEFT[getRow(board, 2)] + SCORE_LEFT[getRow(board, 3)];
+        }
+    }
+
+    /**
+     * Slides and merges a packed row towards column 0. Every tile merges at most once per move,
+     * and two 32768-tiles are never merged since the result can not be represented.
+     * This is the reference implementation the Precomputer row transition tables are built from.
+     * @param packedRow The 16-bit packed row
+     * @return The 16-bit packed row in moved state
+     */
+    public static int slideRowLeft(int packedRow) {
+        int result = 0;
+        int target = 0;
+        int last = 0;
+        for (int col = 0; col < BOARD_SIZE; col++) {
+            int exponent = (packedRow >>> (col << 2)) & 0xF;
+            if (exponent == 0) {
+                continue;
+            }
+            if (exponent == last && exponent < 15) {
+                // Merge into the previously placed tile, which can not merge again
+                result += 1 << ((target - 1) << 2);
+                last = 0;
+            } else {
+                result |= exponent << (target << 2);
+                last = exponent;
+                target++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the score gained by sliding a packed row towards column 0
+     * @param packedRow The 16-bit packed row
+     * @return The sum of all merged tile values
+     */
+    public static int rowLeftScore(int packedRow) {
+        int score = 0;
+        int last = 0;
+        for (int col = 0; col < BOARD_SIZE; col++) {
+            int exponent = (packedRow >>> (col << 2)) & 0xF;
+            if (exponent == 0) {
+                continue;
+            }
+            if (exponent == last && exponent < 15) {
+                score += 1 << (exponent + 1);
+                last = 0;
+            } else {
+                last = exponent;
+            }
+        }
+        return score;
+    }
+
+    /* ================ HEURISTICS =================== */
+
+    /**
+     * Returns the amount of free cells on a board
+     * @param board The packed board
+     * @return An integer of the amount of free cells
+     */
+    public static int getFreeCellCount(long board) {
+        // Fold every nibble into its lowest bit, which is then set iff the cell is occupied
+        long x = board | (board >>> 2);
+        x |= x >>> 1;
+        return 16 - Long.bitCount(x & 0x1111111111111111L);
+    }
+
+    /**
+     * Checks whether a state is a victory
+     * @param board The packed board
+     * @return Whether a TARGET_VALUE tile is present
+     */
+    public static boolean isVictory(long board) {
+        int target = toExponent(TARGET_VALUE);
+        for (int i = 0; i < 16; i++) {
+            if (((board >>> (i << 2)) & 0xF) == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the highest exponent present on the board
+     */
+    public static int getMaxExponent(long board) {
+        int max = 0;
+        for (int i = 0; i < 16; i++) {
+            max = Math.max(max, (int) ((board >>> (i << 2)) & 0xF));
+        }
+        return max;
+    }
+
+    /**
+     * Returns the total number of merges possible, equivalent to Board.getNumPossibleMerges
+     * @param board The packed board
+     * @return An integer of the total number of merges possible in the current configuration.
+     */
+    public static int getNumPossibleMerges(long board) {
+        int tot = 0;
+        for (int row = 0; row < BOARD_SIZE - 1; row += 2) {
+            for (int col = 0; col < BOARD_SIZE - 1; col++) {
+                if (getCell(board, row, col) == getCell(board, row, col + 1)) { tot++; }
+                if (getCell(board, row, col + 1) == getCell(board, row + 1, col + 1)) { tot++; }
+                if (getCell(board, row, col) == getCell(board, row + 1, col)) { tot++; }
+            }
+        }
+        return tot;
+    }
+
+    /**
+     * Checks that highest tiles are in the corners, equivalent to Board.highestInCorner
+     * @param board The packed board
+     * @return Logarithmic value of max tile
+     */
+    public static double highestInCorner(long board) {
+        int max = getMaxExponent(board);
+        if (getCell(board, 0, 0) == max || getCell(board, 0, 3) == max
+                || getCell(board, 3, 0) == max || getCell(board, 3, 3) == max) {
+            return Math.log(toValue(max) * 10);
+        }
+        return Math.log(toValue(max) / 10);
+    }
+
+    /**
+     * Returns a value for the board multiplied with the snake weight matrix, equivalent to Board.getSnakeValue
+     * @param board The packed board
+     * @return The log value of the sum
+     */
+    public static double getSnakeValue(long board) {
+        return Math.log(getWeightedSum(board, SNAKE_WEIGHTS));
+    }
+
+    /**
+     * Returns a value for the board multiplied with the gradient weight matrix, equivalent to Board.getGradientValue
+     * @param board The packed board
+     * @return The log value of the sum
+     */
+    public static double getGradientValue(long board) {
+        return Math.log(Math.max(getWeightedSum(board, GRADIENT_WEIGHTS), Double.MIN_VALUE));
+    }
+
+    private static double getWeightedSum(long board, double[][] weights) {
+        double score = 0.0;
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                score += toValue(getCell(board, row, col)) * weights[row][col];
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Checks whether the rightmost column has a free cell
+     */
+    public static boolean rightmostNotFull(long board) {
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            if (getCell(board, row, BOARD_SIZE - 1) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if it is possible to make a move
+     * @param board The packed board
+     * @return Whether any direction changes the board
+     */
+    public static boolean canMove(long board) {
+        for (Direction direction : Direction.values()) {
+            if (move(board, direction) != board) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -4,7 +4,6 @@ import org.apache.log4j.Logger;
 
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -22,6 +21,7 @@ public class Board {
     private boolean canMove;
     private int currentScore;
     private int[][] tiles = new int[BOARD_SIZE][BOARD_SIZE];
+    private SpawnSource spawnSource = Math::random;
 
     /**
      * Constructors
@@ -30,6 +30,9 @@ public class Board {
     public Board(int[][] existing) {
         this.tiles = existing;
     }
+    public Board(SpawnSource spawnSource) {
+        this.spawnSource = spawnSource;
+    }
 
     /**
      * Reset the board to a new state
@@ -58,15 +61,14 @@ public class Board {
     public boolean doMove(Direction direction) {
         // log.debug("Moving in direction: " + direction);
         boolean didMove = false;
-        Object[] values = move(this.getCopyOfBoard(), direction); // move returns both the board and score respectively
-
-        int[][] movedBoard = (int[][]) values[0];
+        long packedBoard = BitBoard.fromArray(this.tiles);
+        long movedBoard = BitBoard.move(packedBoard, direction);
 
-        if (!Arrays.deepEquals(movedBoard, this.tiles)) {
+        if (movedBoard != packedBoard) {
             // log.debug("Board state changed, did move and appending tile");
-            this.tiles = movedBoard;
+            this.tiles = BitBoard.toArray(movedBoard);
             addTile();
-            currentScore += (int) values[1];
+            currentScore += BitBoard.getMoveScore(packedBoard, direction);
             didMove =  true;
         } else {
             // log.debug("Board state did not change, did not append tile");
@@ -94,10 +96,10 @@ public class Board {
             return;
         }
 
-        int cellToPopulate = (int)(Math.random() * allFreeCells.size());
+        int cellToPopulate = (int)(spawnSource.nextDouble() * allFreeCells.size());
         Point cord = allFreeCells.get(cellToPopulate);
         // log.debug("Adding tile to: (" + cord.x + ", " + cord.y + ") col/row");
-        tiles[cord.y][cord.x] = Math.random() < 0.9 ? 2 : 4;
+        tiles[cord.y][cord.x] = spawnSource.nextDouble() < 0.9 ? 2 : 4;
     }
 
     /**
@@ -404,84 +406,18 @@ public class Board {
     }
 
     /**
-     * Moves the board paramenter in the parameter direction
+     * Moves the board paramenter in the parameter direction, through the precomputed row transition tables
      * @param board Board to move
      * @param direction Direction to move in
      * @return Board in moved state
      */
     public static Object[] move(int[][] board, Direction direction) {
-        int score = 0;
-        // Rotate the board to simplify the merging algorithm
-        switch (direction) {
-            case UP:
-                board = rotateCounterClockwise(board);
-                break;
-            case RIGHT:
-                board = rotateCounterClockwise(board);
-                board =rotateCounterClockwise(board);
-                break;
-            case DOWN:
-                board = rotateClockwise(board);
-                break;
-            default:
-                break;
-        }
-
-        for (int row = 0; row < BOARD_SIZE; row++) {
-
-            int lastMergePosition = 0;
-
-            for (int col = 1; col < BOARD_SIZE; col++) {
-
-                if (board[row][col] == 0) {
-                    continue;
-                }
-
-                int previousPosition = col - 1;
-
-                while (previousPosition > lastMergePosition && board[row][previousPosition] == 0) { // Skip all unpopulated cells (> 0)
-                    --previousPosition;
-                }
-
-                if (previousPosition == col) {
-                    continue;
-                } else if (board[row][previousPosition] == 0) {
-                    // Moving to an empty cell
-                    board[row][previousPosition] = board[row][col];
-                    board[row][col] = 0;
-                } else if (board[row][previousPosition] == board[row][col]) {
-                    // Merging two matching cells
-                    board[row][previousPosition] = board[row][col];
-                    board[row][col] = 0;
-                    board[row][previousPosition] *= 2;
-                    score += board[row][previousPosition]; // Update the score
-
-                    lastMergePosition = previousPosition + 1;
-                } else if (board[row][previousPosition] != board[row][col] && previousPosition + 1 != col) {
-                    board[row][previousPosition + 1] = board[row][col];
-                    board[row][col] = 0;
-                }
-            }
-        }
-        switch (direction) {
-            case UP:
-                board = rotateClockwise(board);
-                break;
-            case RIGHT:
-                board = rotateClockwise(board);
-                board = rotateClockwise(board);
-                break;
-            case DOWN:
-                board = rotateCounterClockwise(board);
-                break;
-            default:
-                break;
-        }
+        long packedBoard = BitBoard.fromArray(board);
 
         // Dirty hack to return both the board and the score achieved with this move
         Object[] values = new Object[2];
-        values[0] = board;
-        values[1] = score;
+        values[0] = BitBoard.toArray(BitBoard.move(packedBoard, direction));
+        values[1] = BitBoard.getMoveScore(packedBoard, direction);
         return values;
     }
 
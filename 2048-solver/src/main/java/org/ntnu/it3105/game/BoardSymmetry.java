@@ -0,0 +1,166 @@
+package org.ntnu.it3105.game;
+
+/**
+ * The 8 symmetries of the board (rotations and reflections) on packed boards, see BitBoard.
+ * <p>
+ * Symmetric boards have the same expectimax value as long as the heuristic is symmetric too, and the best move of
+ * one is the mapped best move of the other. canonicalize maps all 8 variants of a board to the same key, so caches
+ * can share entries between them.
+ */
+public final class BoardSymmetry {
+
+    public static final int IDENTITY = 0;
+    public static final int ROTATE_CLOCKWISE = 1;
+    public static final int ROTATE_HALF = 2;
+    public static final int ROTATE_COUNTER_CLOCKWISE = 3;
+    public static final int FLIP_HORIZONTAL = 4;
+    public static final int FLIP_VERTICAL = 5;
+    public static final int TRANSPOSE = 6;
+    public static final int ANTI_TRANSPOSE = 7;
+    public static final int COUNT = 8;
+
+    // Direction code a move turns into once the board is transformed, indexed by [symmetry][direction code]
+    private static final int[][] DIRECTION_MAP = {
+            {0, 1, 2, 3},
+            {1, 2, 3, 0},
+            {2, 3, 0, 1},
+            {3, 0, 1, 2},
+            {0, 3, 2, 1},
+            {2, 1, 0, 3},
+            {3, 2, 1, 0},
+            {1, 0, 3, 2},
+    };
+
+    private static final Direction[] BY_CODE = new Direction[4];
+
+    static {
+        for (Direction direction : Direction.values()) {
+            BY_CODE[direction.directionCode] = direction;
+        }
+    }
+
+    private BoardSymmetry() {
+        // Only static helpers
+    }
+
+    /**
+     * Mirrors the board in its main diagonal, cell (row, col) moves to (col, row)
+     */
+    public static long transpose(long board) {
+        long a1 = board & 0xF0F00F0FF0F00F0FL;
+        long a2 = board & 0x0000F0F00000F0F0L;
+        long a3 = board & 0x0F0F00000F0F0000L;
+        long a = a1 | (a2 << 12) | (a3 >>> 12);
+        long b1 = a & 0xFF00FF0000FF00FFL;
+        long b2 = a & 0x00FF00FF00000000L;
+        long b3 = a & 0x00000000FF00FF00L;
+        return b1 | (b2 >>> 24) | (b3 << 24);
+    }
+
+    /**
+     * Mirrors the board left to right, cell (row, col) moves to (row, 3 - col)
+     */
+    public static long flipHorizontal(long board) {
+        long x = ((board & 0x00FF00FF00FF00FFL) << 8) | ((board >>> 8) & 0x00FF00FF00FF00FFL);
+        return ((x & 0x0F0F0F0F0F0F0F0FL) << 4) | ((x >>> 4) & 0x0F0F0F0F0F0F0F0FL);
+    }
+
+    /**
+     * Mirrors the board top to bottom, cell (row, col) moves to (3 - row, col)
+     */
+    public static long flipVertical(long board) {
+        long x = (board << 32) | (board >>> 32);
+        return ((x & 0x0000FFFF0000FFFFL) << 16) | ((x >>> 16) & 0x0000FFFF0000FFFFL);
+    }
+
+    /**
+     * Applies one of the 8 symmetries to a board
+     * @param board The packed board
+     * @param symmetry One of the symmetry constants
+     * @return The transformed board
+     */
+    public static long apply(long board, int symmetry) {
+        switch (symmetry) {
+            case ROTATE_CLOCKWISE:
+                return flipHorizontal(transpose(board));
+            case ROTATE_HALF:
+                return flipHorizontal(flipVertical(board));
+            case ROTATE_COUNTER_CLOCKWISE:
+                return flipVertical(transpose(board));
+            case FLIP_HORIZONTAL:
+                return flipHorizontal(board);
+            case FLIP_VERTICAL:
+                return flipVertical(board);
+            case TRANSPOSE:
+                return transpose(board);
+            case ANTI_TRANSPOSE:
+                return flipHorizontal(flipVertical(transpose(board)));
+            default:
+                return board;
+        }
+    }
+
+    /**
+     * Returns the canonical form of a board, the smallest of its 8 symmetric variants
+     * @param board The packed board
+     * @return The same key for all symmetric variants of the board
+     */
+    public static long canonicalize(long board) {
+        long t = transpose(board);
+        long min = Math.min(board, t);
+        long h = flipHorizontal(board);
+        min = Math.min(min, h);
+        long v = flipVertical(board);
+        min = Math.min(min, v);
+        min = Math.min(min, flipVertical(h));
+        long th = flipHorizontal(t);
+        min = Math.min(min, th);
+        min = Math.min(min, flipVertical(t));
+        return Math.min(min, flipVertical(th));
+    }
+
+    /**
+     * Returns the symmetry that transforms the board into its canonical form
+     * @param board The packed board
+     * @return One of the symmetry constants, apply(board, symmetry) == canonicalize(board)
+     */
+    public static int canonicalSymmetry(long board) {
+        int best = IDENTITY;
+        long min = board;
+        for (int symmetry = 1; symmetry < COUNT; symmetry++) {
+            long transformed = apply(board, symmetry);
+            if (transformed < min) {
+                min = transformed;
+                best = symmetry;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Maps a move on the original board to the same move on the transformed board
+     * @param direction The direction on the original board
+     * @param symmetry The symmetry applied to the board
+     * @return The direction on the transformed board
+     */
+    public static Direction mapDirection(Direction direction, int symmetry) {
+        return BY_CODE[DIRECTION_MAP[symmetry][direction.directionCode]];
+    }
+
+    /**
+     * Maps a move on the transformed board back to the same move on the original board,
+     * e.g. a best move found for the canonical board
+     * @param direction The direction on the transformed board
+     * @param symmetry The symmetry applied to the board
+     * @return The direction on the original board
+     */
+    public static Direction unmapDirection(Direction direction, int symmetry) {
+        int[] map = DIRECTION_MAP[symmetry];
+        for (int code = 0; code < map.length; code++) {
+            if (map[code] == direction.directionCode) {
+                return BY_CODE[code];
+            }
+        }
+        throw new IllegalArgumentException("Unknown direction " + direction);
+    }
+}
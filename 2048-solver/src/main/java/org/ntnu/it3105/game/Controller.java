@@ -1,8 +1,8 @@
 package org.ntnu.it3105.game;
 import static org.ntnu.it3105.ai.Expectimax.GAME_DATA_SCRAPER;
 import static org.ntnu.it3105.Main.USE_GUI;
-import static org.ntnu.it3105.game.Board.getFlattenedBoard;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.layout.GridPane;
@@ -11,6 +11,7 @@ import org.ntnu.it3105.utils.GameDataAppender;
 
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Created by Håkon Ødegård Løvdal (hakloev) on 07/10/15.
@@ -28,6 +29,7 @@ public class Controller {
     private Board drawingboard;
     private Record recordManager;
     private ExecutorService es;
+    private AtomicReference<Frame> pendingFrame = new AtomicReference<>();
 
     /**
      * Initialize method called when FXMLLoader loads the Board.fxml
@@ -46,32 +48,70 @@ public class Controller {
     }
 
     /**
-     * Delegates the movement to the board if possible
+     * Delegates the movement to the board if possible, and redraws the board on the calling (FX) thread
      * @param directionToMove The direction to move
+     * @return Whether the board changed
      */
-    public void doMove(Direction directionToMove) {
-        if (!board.hasWon() && board.canMove()) {
-            int[][] boardCopy = board.getCopyOfBoard();
-            boolean didMove = board.doMove(directionToMove);
+    public boolean doMove(Direction directionToMove) {
+        boolean didMove = applyMove(directionToMove);
 
-             /* Appends the current state, and the move actuated to a file on the following format:
+        if (USE_GUI && didMove) {
+            recordManager.saveRecord(board.getCurrentScore());
+            redraw(board.getBoard());
+        }
+        return didMove;
+    }
 
-            2,0,2,8,2,8,16,256,2,16,8,64,4,2,8,32,2
+    /**
+     * Delegates the movement to the board if possible, without touching the UI. Used by the solver thread,
+     * which hands the result to the UI with publishBoard.
+     * @param directionToMove The direction to move
+     * @return Whether the board changed
+     */
+    public boolean applyMove(Direction directionToMove) {
+        if (board.hasWon() || !board.canMove()) {
+            return false;
+        }
 
-            Each pair of four represent a row on the board, from top to bottom. The last
-            digit represent the direction. See Direction for a detailed description of the
-            direction code.
+        int[][] boardCopy = board.getCopyOfBoard();
+        int scoreBefore = board.getCurrentScore();
+        boolean didMove = board.doMove(directionToMove);
 
-            */
+         /* Appends the current state, and the move actuated to a file on the following format:
 
-            if (GAME_DATA_SCRAPER && didMove) {
-                GameDataAppender.appendToFile(getFlattenedBoard(boardCopy) + directionToMove.directionCode + "\n");
-            }
+        2,0,2,8,2,8,16,256,2,16,8,64,4,2,8,32,2
 
-            if (USE_GUI && didMove) {
-                recordManager.saveRecord(board.getCurrentScore());
-                redraw(board.getBoard());
-            }
+        Each pair of four represent a row on the board, from top to bottom. The last
+        digit represent the direction. See Direction for a detailed description of the
+        direction code. With -DgameDataFormat=binary the same sample is stored as a
+        GameRecordFormat record instead, see GameDataAppender.
+
+        */
+
+        if (GAME_DATA_SCRAPER && didMove) {
+            GameDataAppender.appendRecord(boardCopy, directionToMove.directionCode, scoreBefore);
+        }
+
+        return didMove;
+    }
+
+    /**
+     * Hands a snapshot of the board to the FX application thread for redrawing. Can be called from any thread.
+     * Only one redraw is queued at a time, snapshots published while it is pending replace each other, so a
+     * solver moving faster than the frame rate never backs up the FX thread.
+     */
+    public void publishBoard() {
+        if (!USE_GUI) {
+            return;
+        }
+
+        Frame frame = new Frame(board.getCopyOfBoard(), board.getCurrentScore());
+        if (pendingFrame.getAndSet(frame) == null) {
+            Platform.runLater(() -> {
+                Frame latest = pendingFrame.getAndSet(null);
+                recordManager.saveRecord(latest.score);
+                redraw(latest.tiles, latest.score);
+            });
         }
     }
 
@@ -79,9 +119,16 @@ public class Controller {
      * Redraw the entire GridPane with new tiles
      */
     public void redraw(int[][] board) {
+        redraw(board, this.board.getCurrentScore());
+    }
+
+    /**
+     * Redraw the entire GridPane with new tiles and score
+     */
+    private void redraw(int[][] board, int score) {
         grid.getChildren().clear();
 
-        scoreLabel.setText(String.valueOf(this.board.getCurrentScore()));
+        scoreLabel.setText(String.valueOf(score));
         bestLabel.setText(String.valueOf(recordManager.getRecord()));
 
         for (int row = 0; row < Board.BOARD_SIZE; row++) {
@@ -130,4 +177,18 @@ public class Controller {
             log.error("Interrupted during ExecutorService shutdown");
         }
     }
+
+    /**
+     * Snapshot of the board and score handed from the solver thread to the FX thread
+     */
+    private static class Frame {
+
+        final int[][] tiles;
+        final int score;
+
+        Frame(int[][] tiles, int score) {
+            this.tiles = tiles;
+            this.score = score;
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package org.ntnu.it3105.game;
+
+import java.util.Random;
+
+/**
+ * Source of the random numbers deciding where a new tile spawns and whether it is a 2 or a 4.
+ * <p>
+ * Boards use Math.random by default. A seeded source makes the spawns of a game reproducible, as long as the
+ * same moves are made, which is what the replay harness relies on.
+ */
+@FunctionalInterface
+public interface SpawnSource {
+
+    /**
+     * Returns a uniformly distributed number in [0, 1)
+     */
+    double nextDouble();
+
+    /**
+     * Returns a source producing the same sequence for the same seed
+     * @param seed The seed
+     * @return The seeded source
+     */
+    static SpawnSource seeded(long seed) {
+        return new Random(seed)::nextDouble;
+    }
+}
@@ -1,6 +1,7 @@
 package org.ntnu.it3105.precompute;
 
 import org.apache.log4j.Logger;
+import org.ntnu.it3105.game.BitBoard;
 import org.ntnu.it3105.game.Direction;
 
 import java.util.Arrays;
@@ -18,6 +19,43 @@ public class Precomputer {
     // Lookup table is store in MOVE LEFT
     public static HashMap<String, ResultTuple> lookupTable = new HashMap<>();
 
+    /*
+     * Primitive row transition tables, indexed by a 16-bit packed row of tile exponents (see BitBoard).
+     * The row tables hold the moved row, the column tables hold the moved column already spread into
+     * column 0 of a packed board, so it only needs to be shifted into place. Score tables hold the
+     * sum of the tiles merged by the transition.
+     */
+    public static final int ROW_COUNT = 1 << 16;
+    public static final char[] ROW_LEFT = new char[ROW_COUNT];
+    public static final char[] ROW_RIGHT = new char[ROW_COUNT];
+    public static final long[] COLUMN_UP = new long[ROW_COUNT];
+    public static final long[] COLUMN_DOWN = new long[ROW_COUNT];
+    public static final int[] SCORE_LEFT = new int[ROW_COUNT];
+    public static final int[] SCORE_RIGHT = new int[ROW_COUNT];
+
+    static {
+        computeRowTables();
+    }
+
+    /**
+     * Fills the primitive row transition tables. Up and left share transitions, as do down and right,
+     * since a column is packed with row 0 in its lowest nibble.
+     */
+    private static void computeRowTables() {
+        for (int row = 0; row < ROW_COUNT; row++) {
+            int left = BitBoard.slideRowLeft(row);
+            int reversed = BitBoard.reverseRow(row);
+            int right = BitBoard.reverseRow(BitBoard.slideRowLeft(reversed));
+
+            ROW_LEFT[row] = (char) left;
+            ROW_RIGHT[row] = (char) right;
+            COLUMN_UP[row] = BitBoard.spreadColumn(left, 0);
+            COLUMN_DOWN[row] = BitBoard.spreadColumn(right, 0);
+            SCORE_LEFT[row] = BitBoard.rowLeftScore(row);
+            SCORE_RIGHT[row] = BitBoard.rowLeftScore(reversed);
+        }
+    }
+
     /**
      * Computes all transformations and their score results
      */
@@ -35,7 +73,14 @@ public class Precomputer {
         }
     }
 
-    private static MoveResult get(int[][] board, Direction d) {
+    /**
+     * Moves a board through the string keyed lookup table. Requires compute() to have been called,
+     * and only supports tiles up to the largest entry in values. Kept as a reference for the primitive tables.
+     * @param board The board matrix
+     * @param d The direction to move in
+     * @return The moved board and the score of the move
+     */
+    public static MoveResult get(int[][] board, Direction d) {
         MoveResult mr = new MoveResult();
         ResultTuple rt;
         int[] col;
@@ -0,0 +1,143 @@
+package org.ntnu.it3105.server;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.*;
+import java.util.Iterator;
+
+/**
+ * Non-blocking game server for external ANN clients, one independent game session per connection.
+ * <p>
+ * A single selector thread serves all clients. The text port speaks the line protocol of
+ * Expectimax.solveForStatisticsUsingSocket, so existing clients keep working, the binary port speaks the
+ * compact framing described in AnnSession, and the batch port plays K games per connection in lockstep so the
+ * client can run its network on K boards at a time. Each session logs its throughput when closed.
+ */
+public class AnnGameServer {
+
+    public static int TEXT_PORT = Integer.parseInt(System.getProperty("annTextPort", "57315"));
+    public static int BINARY_PORT = Integer.parseInt(System.getProperty("annBinaryPort", "57316"));
+    public static int BATCH_PORT = Integer.parseInt(System.getProperty("annBatchPort", "57317"));
+
+    private Logger log = Logger.getLogger(AnnGameServer.class);
+
+    private final Selector selector;
+    private final ServerSocketChannel textServer;
+    private final ServerSocketChannel binaryServer;
+    private final ServerSocketChannel batchServer;
+    private volatile boolean running = true;
+    private int sessions = 0;
+
+    /**
+     * Opens the server sockets
+     * @param textPort The port of the line protocol, 0 disables it
+     * @param binaryPort The port of the binary protocol, 0 disables it
+     * @param batchPort The port of the batched binary protocol, 0 disables it
+     * @throws IOException If a port cannot be bound
+     */
+    public AnnGameServer(int textPort, int binaryPort, int batchPort) throws IOException {
+        this.selector = Selector.open();
+        this.textServer = textPort > 0 ? listen(textPort) : null;
+        this.binaryServer = binaryPort > 0 ? listen(binaryPort) : null;
+        this.batchServer = batchPort > 0 ? listen(batchPort) : null;
+    }
+
+    private ServerSocketChannel listen(int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        log.info("ANN server accepting connections on localhost:" + port);
+        return server;
+    }
+
+    /**
+     * Serves clients on the calling thread until stop() is called
+     */
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                log.error("Selector failed: " + e.getMessage());
+                break;
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept((ServerSocketChannel) key.channel());
+                    continue;
+                }
+
+                AnnSession session = (AnnSession) key.attachment();
+                try {
+                    if (key.isReadable() && !session.onReadable()) {
+                        key.cancel();
+                        session.close();
+                        continue;
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        session.onWritable();
+                    }
+                } catch (IOException e) {
+                    log.info("Session " + session.getId() + " disconnected: " + e.getMessage());
+                    key.cancel();
+                    session.close();
+                }
+            }
+        }
+        closeAll();
+    }
+
+    private void accept(ServerSocketChannel server) {
+        try {
+            SocketChannel channel = server.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            AnnSession.Mode mode = server == batchServer ? AnnSession.Mode.BATCH
+                    : server == binaryServer ? AnnSession.Mode.BINARY : AnnSession.Mode.TEXT;
+            AnnSession session = new AnnSession(++sessions, channel, mode);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ, session);
+            log.info("Connection established: session " + session.getId() + " " + channel.getRemoteAddress());
+            session.start(key);
+        } catch (IOException e) {
+            log.error("Could not accept connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the server loop, closing all sessions. Can be called from any thread.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof AnnSession) {
+                ((AnnSession) key.attachment()).close();
+            }
+        }
+        try {
+            if (textServer != null) textServer.close();
+            if (binaryServer != null) binaryServer.close();
+            if (batchServer != null) batchServer.close();
+            selector.close();
+        } catch (IOException e) {
+            log.error("Could not close the ANN server: " + e.getMessage());
+        }
+    }
+}
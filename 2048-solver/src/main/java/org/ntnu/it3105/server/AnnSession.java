@@ -0,0 +1,343 @@
+package org.ntnu.it3105.server;
+
+import org.apache.log4j.Logger;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.ntnu.it3105.game.Direction;
+import org.ntnu.it3105.simulation.GameResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One ANN client connected to the AnnGameServer, playing an endless series of games on its own board.
+ * <p>
+ * The server always speaks first, sending the board, and the client answers with the direction to move in.
+ * A direction that does not change the board is answered with the same board again. When a game is over the
+ * server sends the end of game message and the first board of the next game.
+ * <p>
+ * Binary framing, big endian:
+ * <pre>
+ * server: 0x01, long packed board (see BitBoard)     client: byte direction code
+ * server: 0x02, int final score                      (end of game, followed by the next board)
+ * </pre>
+ * Text framing, compatible with the clients of Expectimax.solveForStatisticsUsingSocket: the server sends the
+ * 16 tile values row by row, comma separated, on one line and "END" at the end of a game, the client sends the
+ * direction code on one line.
+ * <p>
+ * Batch framing, big endian, plays K games in lockstep so the client can evaluate all K boards in one call:
+ * <pre>
+ * client: int K (once, after connecting)
+ * server: 0x03, int K, K longs packed boards        client: K bytes direction codes, in board order
+ * server: 0x04, int slot, int final score           (end of the game in a slot, before the next batch)
+ * </pre>
+ * A game that ends is replaced by a new game in the same slot, so every batch holds K boards.
+ */
+class AnnSession {
+
+    /**
+     * The framing spoken by a session, decided by the port the client connected to
+     */
+    enum Mode {
+        TEXT, BINARY, BATCH
+    }
+
+    static final byte BOARD_FRAME = 0x01;
+    static final byte END_FRAME = 0x02;
+    static final byte BATCH_FRAME = 0x03;
+    static final byte BATCH_END_FRAME = 0x04;
+    static final int MAX_BATCH_SIZE = 4096;
+
+    private static final int MAX_LINE_LENGTH = 64;
+
+    private Logger log = Logger.getLogger(AnnSession.class);
+
+    private final int id;
+    private final SocketChannel channel;
+    private final Mode mode;
+    private ByteBuffer in = ByteBuffer.allocate(256);
+    private ByteBuffer out = ByteBuffer.allocate(256);
+    private SelectionKey key;
+
+    // One game per slot, a single slot unless the session is batched
+    private Board[] boards;
+    private int[] gameMoves;
+    private long[] gameStarts;
+    private int games;
+    private long totalMoves;
+    private long totalScore;
+    private long bytesIn;
+    private long bytesOut;
+    private final long connected = System.currentTimeMillis();
+
+    AnnSession(int id, SocketChannel channel, Mode mode) {
+        this.id = id;
+        this.channel = channel;
+        this.mode = mode;
+    }
+
+    /**
+     * Registers the session with the selector and sends the first board, batched sessions first wait for K
+     */
+    void start(SelectionKey key) {
+        this.key = key;
+        if (mode != Mode.BATCH) {
+            startSlots(1);
+            sendBoard();
+        }
+    }
+
+    private void startSlots(int slots) {
+        boards = new Board[slots];
+        gameMoves = new int[slots];
+        gameStarts = new long[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            startGame(slot);
+        }
+    }
+
+    /**
+     * Reads the available directions and answers each of them
+     * @return False once the client has disconnected or sent garbage, the session should then be closed
+     */
+    boolean onReadable() throws IOException {
+        int read = channel.read(in);
+        if (read < 0) {
+            return false;
+        }
+        bytesIn += read;
+        in.flip();
+        boolean open;
+        switch (mode) {
+            case TEXT:
+                open = readText();
+                break;
+            case BINARY:
+                open = readBinary();
+                break;
+            default:
+                open = readBatch();
+                break;
+        }
+        in.compact();
+        return open;
+    }
+
+    /**
+     * Writes as much of the pending output as the socket takes
+     */
+    void onWritable() throws IOException {
+        out.flip();
+        bytesOut += channel.write(out);
+        boolean done = !out.hasRemaining();
+        out.compact();
+        if (done) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private boolean readBinary() {
+        while (in.hasRemaining()) {
+            if (!move(in.get())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readBatch() {
+        if (boards == null) {
+            if (in.remaining() < 4) {
+                return true;
+            }
+            int batchSize = in.getInt();
+            if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+                log.error("Session " + id + " asked for an invalid batch size: " + batchSize);
+                return false;
+            }
+            log.info("Session " + id + " plays " + batchSize + " games in lockstep");
+            in = ByteBuffer.allocate(Math.max(in.capacity(), batchSize * 2)).put(in);
+            in.flip();
+            startSlots(batchSize);
+            sendBoard();
+        }
+
+        while (in.remaining() >= boards.length) {
+            for (int slot = 0; slot < boards.length; slot++) {
+                int directionCode = in.get();
+                if (directionCode < 0 || directionCode >= 4) {
+                    log.error("Session " + id + " sent an invalid direction code: " + directionCode);
+                    return false;
+                }
+                applyMove(slot, directionCode);
+            }
+            sendBoard();
+        }
+        return true;
+    }
+
+    private boolean readText() {
+        int lineStart = in.position();
+        for (int i = in.position(); i < in.limit(); i++) {
+            if (in.get(i) != '\n') {
+                continue;
+            }
+            String line = new String(in.array(), lineStart, i - lineStart, StandardCharsets.US_ASCII).trim();
+            lineStart = i + 1;
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                if (!move(Integer.parseInt(line))) {
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                log.error("Session " + id + " sent an invalid direction: " + line);
+                return false;
+            }
+        }
+        in.position(lineStart);
+        if (in.remaining() > MAX_LINE_LENGTH) {
+            log.error("Session " + id + " sent a line longer than " + MAX_LINE_LENGTH + " bytes");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Applies a direction from the client and sends the next board
+     */
+    private boolean move(int directionCode) {
+        if (directionCode < 0 || directionCode >= 4) {
+            log.error("Session " + id + " sent an invalid direction code: " + directionCode);
+            return false;
+        }
+        applyMove(0, directionCode);
+        sendBoard();
+        return true;
+    }
+
+    /**
+     * Applies a direction to the game in a slot, replacing the game by a new one once it is over
+     */
+    private void applyMove(int slot, int directionCode) {
+        Board board = boards[slot];
+        if (board.doMove(Direction.values()[directionCode])) {
+            gameMoves[slot]++;
+            totalMoves++;
+        }
+
+        if (board.hasWon() || !board.canMove()) {
+            endGame(slot);
+            startGame(slot);
+        }
+    }
+
+    private void startGame(int slot) {
+        boards[slot] = new Board();
+        boards[slot].initializeNewGame();
+        gameMoves[slot] = 0;
+        gameStarts[slot] = System.currentTimeMillis();
+    }
+
+    private void endGame(int slot) {
+        Board board = boards[slot];
+        games++;
+        totalScore += board.getCurrentScore();
+        long packed = BitBoard.fromArray(board.getBoard());
+        GameResult result = new GameResult(games, board.getCurrentScore(), BitBoard.toValue(BitBoard.getMaxExponent(packed)),
+                gameMoves[slot], System.currentTimeMillis() - gameStarts[slot]);
+        log.debug("Session " + id + ": " + result);
+
+        switch (mode) {
+            case TEXT:
+                reserve(4).put("END\n".getBytes(StandardCharsets.US_ASCII));
+                break;
+            case BINARY:
+                reserve(5).put(END_FRAME).putInt(board.getCurrentScore());
+                break;
+            default:
+                reserve(9).put(BATCH_END_FRAME).putInt(slot).putInt(board.getCurrentScore());
+                break;
+        }
+    }
+
+    private void sendBoard() {
+        if (mode == Mode.BATCH) {
+            ByteBuffer frame = reserve(5 + 8 * boards.length).put(BATCH_FRAME).putInt(boards.length);
+            for (Board board : boards) {
+                frame.putLong(BitBoard.fromArray(board.getBoard()));
+            }
+        } else if (mode == Mode.BINARY) {
+            reserve(9).put(BOARD_FRAME).putLong(BitBoard.fromArray(boards[0].getBoard()));
+        } else {
+            StringBuilder line = new StringBuilder(64);
+            int[][] tiles = boards[0].getBoard();
+            for (int row = 0; row < Board.BOARD_SIZE; row++) {
+                for (int col = 0; col < Board.BOARD_SIZE; col++) {
+                    if (line.length() > 0) {
+                        line.append(',');
+                    }
+                    line.append(tiles[row][col]);
+                }
+            }
+            line.append('\n');
+            byte[] bytes = line.toString().getBytes(StandardCharsets.US_ASCII);
+            reserve(bytes.length).put(bytes);
+        }
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Makes room for a message in the output buffer, which only grows while the client is not reading
+     */
+    private ByteBuffer reserve(int bytes) {
+        if (out.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+            out.flip();
+            larger.put(out);
+            out = larger;
+        }
+        return out;
+    }
+
+    /**
+     * Closes the connection and logs the throughput of the session
+     */
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("Could not close session " + id + ": " + e.getMessage());
+        }
+        log.info("Session " + id + " closed: " + this);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    long getTotalMoves() {
+        return totalMoves;
+    }
+
+    int getGames() {
+        return games;
+    }
+
+    double getMovesPerSecond() {
+        long elapsed = System.currentTimeMillis() - connected;
+        return elapsed == 0 ? 0.0 : totalMoves / (elapsed / 1000.0);
+    }
+
+    @Override
+    public String toString() {
+        return "AnnSession{id=" + id + ", mode=" + mode + ", slots=" + (boards == null ? 0 : boards.length) + ", games=" + games
+                + ", moves=" + totalMoves + ", averageScore=" + (games == 0 ? 0 : totalScore / games)
+                + ", movesPerSecond=" + String.format("%.1f", getMovesPerSecond())
+                + ", bytesIn=" + bytesIn + ", bytesOut=" + bytesOut + "}";
+    }
+}
@@ -0,0 +1,82 @@
+package org.ntnu.it3105.simulation;
+
+/**
+ * The outcome of a single game played by the headless simulator or the statistics solver
+ */
+public class GameResult {
+
+    private final int gameId;
+    private final int score;
+    private final int maxTile;
+    private final int moves;
+    private final long durationMillis;
+    private final int searches;
+    private final long searchNanos;
+
+    public GameResult(int gameId, int score, int maxTile, int moves, long durationMillis) {
+        this(gameId, score, maxTile, moves, durationMillis, 0, 0L);
+    }
+
+    /**
+     * @param searches The number of searches asked for, which includes moves that did not change the board
+     * @param searchNanos The total time spent searching
+     */
+    public GameResult(int gameId, int score, int maxTile, int moves, long durationMillis, int searches, long searchNanos) {
+        this.gameId = gameId;
+        this.score = score;
+        this.maxTile = maxTile;
+        this.moves = moves;
+        this.durationMillis = durationMillis;
+        this.searches = searches;
+        this.searchNanos = searchNanos;
+    }
+
+    public int getGameId() {
+        return gameId;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getMaxTile() {
+        return maxTile;
+    }
+
+    public int getMoves() {
+        return moves;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public int getSearches() {
+        return searches;
+    }
+
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * @return The mean search latency in milliseconds, or 0 if searches were not timed
+     */
+    public double getMeanSearchMillis() {
+        return searches == 0 ? 0.0 : searchNanos / 1e6 / searches;
+    }
+
+    /**
+     * @return The average number of moves per second over the game
+     */
+    public double getMovesPerSecond() {
+        return durationMillis == 0 ? 0.0 : moves / (durationMillis / 1000.0);
+    }
+
+    @Override
+    public String toString() {
+        return "GameResult{game=" + gameId + ", score=" + score + ", maxTile=" + maxTile + ", moves=" + moves
+                + ", seconds=" + (durationMillis / 1000.0) + ", movesPerSecond=" + String.format("%.1f", getMovesPerSecond())
+                + ", meanSearchMillis=" + String.format("%.2f", getMeanSearchMillis()) + "}";
+    }
+}
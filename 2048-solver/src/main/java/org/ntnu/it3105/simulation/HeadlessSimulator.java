@@ -0,0 +1,180 @@
+package org.ntnu.it3105.simulation;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.ai.TranspositionTable;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.ntnu.it3105.game.Direction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.ntnu.it3105.ai.Expectimax.*;
+
+/**
+ * Plays many games concurrently without JavaFX and without a Controller, every game on its own Board.
+ * <p>
+ * All games and their searches share one fork/join pool, so a game waiting on its search helps executing
+ * search subtasks instead of holding on to a thread. The solvers also share one transposition table,
+ * since positions are reached by many games. The simulator owns the table and starts a new search on it once per
+ * wave of as many searches as there are games in progress, so the entries of the other games' current moves are
+ * not taken for stale. Game data is not scraped in this mode.
+ */
+public class HeadlessSimulator {
+
+    public static int PARALLEL_GAMES = Integer.parseInt(System.getProperty("parallelGames", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+    private static Logger log = Logger.getLogger(HeadlessSimulator.class);
+
+    private ForkJoinPool pool;
+    private TranspositionTable transpositionTable;
+    private final AtomicLong searches = new AtomicLong();
+    private int depthLimit;
+
+    /**
+     * @param threads The number of threads shared by all games and searches
+     * @param depthLimit The depth limit handed to every solver
+     */
+    public HeadlessSimulator(int threads, int depthLimit) {
+        this.pool = new ForkJoinPool(threads);
+        this.depthLimit = depthLimit;
+        if (USE_TRANSPOSITION_TABLE) {
+            this.transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE_BITS, TRANSPOSITION_TABLE_POLICY);
+        }
+    }
+
+    /**
+     * Plays a number of games, at most parallelGames at a time
+     * @param games The total number of games to play
+     * @param parallelGames The number of games in progress at the same time
+     * @return The results of all games, ordered by game id
+     */
+    public List<GameResult> run(int games, int parallelGames) {
+        return run(games, parallelGames, new StatisticsReport(StatisticsReport.LABEL)).getResults();
+    }
+
+    /**
+     * Plays a number of games, at most parallelGames at a time, collecting the results in a report
+     * @param games The total number of games to play
+     * @param parallelGames The number of games in progress at the same time
+     * @param report The report to add the results to, finished when all games are played
+     * @return The report
+     */
+    public StatisticsReport run(int games, int parallelGames, StatisticsReport report) {
+        log.info("Starting headless simulation of " + games + " games, " + parallelGames + " at a time on "
+                + pool.getParallelism() + " threads");
+        long start = System.currentTimeMillis();
+
+        AtomicInteger nextGame = new AtomicInteger();
+        int wave = Math.min(games, parallelGames);
+        Runnable onSearch = () -> {
+            if (transpositionTable != null && searches.incrementAndGet() % wave == 0) {
+                transpositionTable.newSearch();
+            }
+        };
+
+        // Every game slot keeps one solver and plays games until there are none left
+        ArrayList<Callable<Void>> slots = new ArrayList<>();
+        for (int i = 0; i < wave; i++) {
+            slots.add(() -> {
+                Expectimax solver = new Expectimax(null, depthLimit, pool, transpositionTable);
+                int gameId;
+                while ((gameId = nextGame.getAndIncrement()) < games) {
+                    GameResult result = playGame(gameId, solver, onSearch);
+                    log.info(result);
+                    report.add(result);
+                }
+                // Leaves the shared pool running, but unregisters the metrics of the solver
+                solver.shutdown();
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> slot : pool.invokeAll(slots)) {
+                slot.get();
+            }
+        } catch (InterruptedException e) {
+            log.error("Interrupted during headless simulation!");
+        } catch (ExecutionException e) {
+            log.error("Caught execution exception during headless simulation: " + e.getMessage());
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        report.finish();
+        log.info("Headless simulation played " + report.getResults().size() + " games in " + (elapsed / 1000) + " seconds ("
+                + String.format("%.1f", report.getGamesPerHour()) + " games per hour)");
+        log.info(report);
+        if (transpositionTable != null) {
+            log.info(transpositionTable);
+        }
+        return report;
+    }
+
+    /**
+     * Plays one game to the end on a fresh board
+     * @param gameId The id of the game
+     * @param solver The solver choosing the moves
+     * @return The result of the game
+     */
+    public static GameResult playGame(int gameId, Expectimax solver) {
+        return playGame(gameId, solver, () -> { });
+    }
+
+    /**
+     * Plays one game to the end on a fresh board
+     * @param gameId The id of the game
+     * @param solver The solver choosing the moves
+     * @param onSearch Run before every search
+     * @return The result of the game
+     */
+    public static GameResult playGame(int gameId, Expectimax solver, Runnable onSearch) {
+        Board board = new Board();
+        board.initializeNewGame();
+        long start = System.currentTimeMillis();
+        int moves = 0;
+        int searches = 0;
+        long searchNanos = 0L;
+
+        while (!board.hasWon() && board.canMove()) {
+            onSearch.run();
+            long searchStart = System.nanoTime();
+            Direction directionToMove = solver.getNextMove(BitBoard.fromArray(board.getBoard()));
+            searchNanos += System.nanoTime() - searchStart;
+            searches++;
+            if (board.doMove(directionToMove)) {
+                moves++;
+            }
+        }
+
+        long packed = BitBoard.fromArray(board.getBoard());
+        return new GameResult(gameId, board.getCurrentScore(), BitBoard.toValue(BitBoard.getMaxExponent(packed)),
+                moves, System.currentTimeMillis() - start, searches, searchNanos);
+    }
+
+    /**
+     * Shuts down the shared pool
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+        try {
+            this.pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            log.error("Interrupted while awaiting ForkJoinPool shutdown!");
+        }
+    }
+
+    public static void main(String[] args) {
+        PropertyConfigurator.configure(HeadlessSimulator.class.getClassLoader().getResource("config/log4j.properties"));
+
+        HeadlessSimulator simulator = new HeadlessSimulator(SEARCH_THREADS, 4);
+        simulator.run(NUMBER_OF_STATISTICS_RUNS, PARALLEL_GAMES, new StatisticsReport(StatisticsReport.LABEL))
+                .write(StatisticsReport.OUTPUT);
+        simulator.shutdown();
+    }
+}
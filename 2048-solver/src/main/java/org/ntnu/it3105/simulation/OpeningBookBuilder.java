@@ -0,0 +1,155 @@
+package org.ntnu.it3105.simulation;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.ai.Evaluator;
+import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.ai.OpeningBook;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Direction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Fills an OpeningBook with deep searches of every position of the first moves of a game.
+ * <p>
+ * The positions are enumerated breadth first: all 480 start positions (two tiles of 2 or 4), then every spawn
+ * after the best move of each of them, and so on for bookMoves moves. Each position is searched to bookDepth
+ * with the probability cutoff at bookProbThreshold, much deeper than the solver searches these boards
+ * in play, and appended to the book. Positions already in the book at that depth are not searched again, so an
+ * interrupted build resumes where it stopped, and a longer build extends the book. The book is appended to in
+ * place, so solvers using it with -DopeningBook pick up new positions while the builder runs.
+ * <p>
+ * Usage: OpeningBookBuilder, with the book file from -DopeningBook (default opening_book.bin), created with
+ * 2^bookSizeBits slots if missing. The moves are searched with the evaluator of -Dweights or -Dprofile, which
+ * must be the one of the book.
+ */
+public class OpeningBookBuilder {
+
+    public static int MOVES = Integer.parseInt(System.getProperty("bookMoves", "3"));
+    public static int DEPTH = Integer.parseInt(System.getProperty("bookDepth", "8"));
+    public static double PROBABILITY_THRESHOLD = Double.parseDouble(System.getProperty("bookProbThreshold", "0.000001"));
+    public static int SIZE_BITS = Integer.parseInt(System.getProperty("bookSizeBits", "20"));
+
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private final OpeningBook book;
+    private final Expectimax solver;
+    private final int depth;
+
+    private long searched;
+    private long searchNanos;
+
+    /**
+     * @param book The book to append to, open for writing
+     * @param solver The solver searching the positions, not using the book itself. Moves of searches that time
+     *               out are not stored.
+     * @param depth The depth to search every position to
+     */
+    public OpeningBookBuilder(OpeningBook book, Expectimax solver, int depth) {
+        this.book = book;
+        this.solver = solver;
+        this.depth = depth;
+    }
+
+    public static void main(String[] args) throws IOException {
+        PropertyConfigurator.configure(OpeningBookBuilder.class.getClassLoader().getResource("config/log4j.properties"));
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        File file = new File(Expectimax.OPENING_BOOK.isEmpty() ? "opening_book.bin" : Expectimax.OPENING_BOOK);
+        Evaluator evaluator = Expectimax.getDefaultEvaluator();
+        OpeningBook book = file.exists() ? OpeningBook.open(file, true) : OpeningBook.create(file, SIZE_BITS, evaluator);
+        if (!book.isSearchedWith(evaluator)) {
+            System.out.println(file + " was searched with another heuristic than " + evaluator);
+            System.exit(2);
+        }
+
+        Expectimax solver = new Expectimax(null, 4);
+        solver.setOpeningBook(null);
+        solver.setSeed(DEPTH);
+        solver.setProbabilityThreshold(PROBABILITY_THRESHOLD);
+        // A book move is kept for good, so it must come from a complete search
+        solver.setSearchTimeout(0);
+        System.out.println("Building " + book + " for " + MOVES + " moves at depth " + DEPTH + " with " + evaluator);
+        new OpeningBookBuilder(book, solver, DEPTH).build(MOVES);
+        solver.shutdown();
+        book.close();
+        System.out.println("Done, " + book);
+    }
+
+    /**
+     * Searches and stores every position up to a number of moves into the game
+     * @param moves The number of moves after the start positions
+     * @return False if the book filled up
+     */
+    public boolean build(int moves) {
+        Set<Long> positions = startPositions();
+        for (int move = 0; move <= moves; move++) {
+            long start = System.currentTimeMillis();
+            Set<Long> next = new HashSet<>();
+            for (long board : positions) {
+                Direction direction = book.getDepth(board) >= depth ? book.get(board) : search(board);
+                if (direction == null) {
+                    System.out.println("The book is full at " + book.size() + " positions, rebuild it with a larger -DbookSizeBits");
+                    return false;
+                }
+                long movedBoard = BitBoard.move(board, direction);
+                if (move < moves && movedBoard != board) {
+                    addSpawns(movedBoard, next);
+                }
+            }
+            book.force();
+            System.out.println(String.format("move %d: %d positions in %d s, %s", move, positions.size(),
+                    (System.currentTimeMillis() - start) / 1000, book));
+            positions = next;
+        }
+        return true;
+    }
+
+    /**
+     * Searches a position and appends its best move
+     * @return The best move, or null if the book is full
+     */
+    private Direction search(long board) {
+        long start = System.nanoTime();
+        long timeouts = solver.getMetrics().getTimeouts();
+        Direction direction = solver.getNextMove(board, depth);
+        searchNanos += System.nanoTime() - start;
+        if (solver.getMetrics().getTimeouts() != timeouts) {
+            // Only the best of the directions that finished, played in this build but not stored
+            return direction;
+        }
+        if (!book.put(board, direction, depth) && book.getDepth(board) < depth) {
+            return null;
+        }
+        if (++searched % PROGRESS_INTERVAL == 0) {
+            System.out.println(String.format("  %d positions searched, %.1f ms per position", searched,
+                    searchNanos / 1e6 / searched));
+        }
+        return direction;
+    }
+
+    private static Set<Long> startPositions() {
+        Set<Long> positions = new HashSet<>();
+        addSpawns(0L, positions);
+        Set<Long> starts = new HashSet<>();
+        for (long board : positions) {
+            addSpawns(board, starts);
+        }
+        return starts;
+    }
+
+    private static void addSpawns(long board, Set<Long> positions) {
+        for (int cell = 0; cell < 16; cell++) {
+            int shift = cell << 2;
+            if (((board >>> shift) & 0xF) == 0) {
+                positions.add(board | (1L << shift));
+                positions.add(board | (2L << shift));
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.ntnu.it3105.simulation;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.ntnu.it3105.game.Direction;
+import org.ntnu.it3105.game.SpawnSource;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Plays a fixed set of seeded games and compares per-move search latency and node counts against a baseline.
+ * <p>
+ * Game n spawns its tiles from SpawnSource.seeded(n) and seeds the solver with n. record plays the games and
+ * writes one line per move (seed, move, direction, nodes, microseconds) to the baseline file. compare replays
+ * the games, but applies the directions from the baseline rather than the ones it searched, so both runs see
+ * exactly the same positions even if the search changed. Moves where the search disagrees with the baseline
+ * are counted, and a latency increase above the tolerance is reported as a regression with exit code 1.
+ * <p>
+ * Usage: ReplayHarness record baseline.csv [games, default 10]
+ *        ReplayHarness compare baseline.csv [tolerance in percent, default 10]
+ * <p>
+ * A short warm-up game on another seed runs first in both modes. Search must be deterministic for the node
+ * counts to match, so use a single search thread or no transposition table, and no time budget.
+ */
+public class ReplayHarness {
+
+    private static final int WARMUP_MOVES = 300;
+
+    /**
+     * One searched move of a replayed game
+     */
+    private static class MoveSample {
+
+        final int seed;
+        final int move;
+        final int directionCode;
+        final long nodes;
+        final long micros;
+
+        MoveSample(int seed, int move, int directionCode, long nodes, long micros) {
+            this.seed = seed;
+            this.move = move;
+            this.directionCode = directionCode;
+            this.nodes = nodes;
+            this.micros = micros;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        PropertyConfigurator.configure(ReplayHarness.class.getClassLoader().getResource("config/log4j.properties"));
+        Logger.getRootLogger().setLevel(Level.WARN);
+
+        if (args.length < 2 || !(args[0].equals("record") || args[0].equals("compare"))) {
+            System.out.println("Usage: ReplayHarness record|compare <baseline.csv> [games|tolerance]");
+            System.exit(2);
+        }
+        File baselineFile = new File(args[1]);
+        if (Expectimax.MOVE_TIME_BUDGET > 0) {
+            System.out.println("Warning: a move time budget makes the searched depth, and so the replay, timing dependent");
+        }
+
+        warmUp();
+        if (args[0].equals("record")) {
+            int games = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+            record(baselineFile, games);
+        } else {
+            double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+            if (!compare(baselineFile, tolerance)) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static void warmUp() {
+        Expectimax solver = new Expectimax(null, 4);
+        solver.setSeed(-1L);
+        Board board = new Board(SpawnSource.seeded(-1L));
+        board.initializeNewGame();
+        for (int move = 0; move < WARMUP_MOVES && !board.hasWon() && board.canMove(); move++) {
+            board.doMove(solver.getNextMove(BitBoard.fromArray(board.getBoard())));
+        }
+        solver.shutdown();
+    }
+
+    /**
+     * Plays the seeded games with the directions of the search and writes them as the baseline
+     */
+    private static void record(File baselineFile, int games) throws IOException {
+        Expectimax solver = new Expectimax(null, 4);
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(baselineFile), StandardCharsets.UTF_8))) {
+            out.println("seed,move,direction,nodes,micros");
+            for (int seed = 1; seed <= games; seed++) {
+                solver.setSeed(seed);
+                Board board = new Board(SpawnSource.seeded(seed));
+                board.initializeNewGame();
+                long micros = 0L;
+                int move = 0;
+                while (!board.hasWon() && board.canMove()) {
+                    MoveSample sample = search(solver, board, seed, move++);
+                    out.println(sample.seed + "," + sample.move + "," + sample.directionCode + "," + sample.nodes + "," + sample.micros);
+                    micros += sample.micros;
+                    board.doMove(Direction.values()[sample.directionCode]);
+                }
+                System.out.println(String.format("seed %3d: %5d moves, score %6d, %8.1f ms searching", seed, move,
+                        board.getCurrentScore(), micros / 1000.0));
+            }
+        }
+        solver.shutdown();
+        System.out.println("Wrote baseline of " + games + " games to " + baselineFile);
+    }
+
+    /**
+     * Replays the baseline games and reports the latency and node changes per game
+     * @return False if the total search latency regressed by more than the tolerance
+     */
+    private static boolean compare(File baselineFile, double tolerance) throws IOException {
+        Map<Integer, List<MoveSample>> baseline = readBaseline(baselineFile);
+        Expectimax solver = new Expectimax(null, 4);
+
+        long baselineMicros = 0L;
+        long currentMicros = 0L;
+        long baselineNodes = 0L;
+        long currentNodes = 0L;
+        int disagreements = 0;
+        int moves = 0;
+
+        System.out.println(String.format("%5s %6s %12s %12s %8s %14s %14s %9s", "seed", "moves", "base ms", "ms", "change",
+                "base nodes", "nodes", "disagree"));
+        for (Map.Entry<Integer, List<MoveSample>> game : baseline.entrySet()) {
+            int seed = game.getKey();
+            solver.setSeed(seed);
+            Board board = new Board(SpawnSource.seeded(seed));
+            board.initializeNewGame();
+
+            long gameBaseMicros = 0L;
+            long gameMicros = 0L;
+            long gameBaseNodes = 0L;
+            long gameNodes = 0L;
+            int gameDisagreements = 0;
+            for (MoveSample expected : game.getValue()) {
+                MoveSample sample = search(solver, board, seed, expected.move);
+                gameBaseMicros += expected.micros;
+                gameMicros += sample.micros;
+                gameBaseNodes += expected.nodes;
+                gameNodes += sample.nodes;
+                if (sample.directionCode != expected.directionCode) {
+                    gameDisagreements++;
+                }
+                // Follow the baseline, so the positions stay identical
+                board.doMove(Direction.values()[expected.directionCode]);
+            }
+
+            System.out.println(String.format("%5d %6d %12.1f %12.1f %7.1f%% %14d %14d %9d", seed, game.getValue().size(),
+                    gameBaseMicros / 1000.0, gameMicros / 1000.0, change(gameBaseMicros, gameMicros), gameBaseNodes,
+                    gameNodes, gameDisagreements));
+            baselineMicros += gameBaseMicros;
+            currentMicros += gameMicros;
+            baselineNodes += gameBaseNodes;
+            currentNodes += gameNodes;
+            disagreements += gameDisagreements;
+            moves += game.getValue().size();
+        }
+        solver.shutdown();
+
+        double latencyChange = change(baselineMicros, currentMicros);
+        System.out.println(String.format(Locale.ROOT, "total: %d moves, latency %.1f -> %.1f ms (%+.1f%%), nodes %d -> %d (%+.1f%%), %d disagreements",
+                moves, baselineMicros / 1000.0, currentMicros / 1000.0, latencyChange, baselineNodes, currentNodes,
+                change(baselineNodes, currentNodes), disagreements));
+        if (latencyChange > tolerance) {
+            System.out.println(String.format("REGRESSION: search latency increased by %.1f%%, tolerance is %.1f%%", latencyChange, tolerance));
+            return false;
+        }
+        return true;
+    }
+
+    private static MoveSample search(Expectimax solver, Board board, int seed, int move) {
+        long packed = BitBoard.fromArray(board.getBoard());
+        long nodesBefore = solver.getNodesSearched();
+        long start = System.nanoTime();
+        Direction direction = solver.getNextMove(packed);
+        long micros = (System.nanoTime() - start) / 1000L;
+        return new MoveSample(seed, move, direction.directionCode, solver.getNodesSearched() - nodesBefore, micros);
+    }
+
+    private static Map<Integer, List<MoveSample>> readBaseline(File baselineFile) throws IOException {
+        Map<Integer, List<MoveSample>> games = new LinkedHashMap<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(baselineFile), StandardCharsets.UTF_8))) {
+            String line = in.readLine();
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(",");
+                MoveSample sample = new MoveSample(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+                games.computeIfAbsent(sample.seed, seed -> new ArrayList<>()).add(sample);
+            }
+        }
+        return games;
+    }
+
+    private static double change(long before, long after) {
+        return before == 0 ? 0.0 : 100.0 * (after - before) / before;
+    }
+}
@@ -0,0 +1,197 @@
+package org.ntnu.it3105.simulation;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects the results of a statistics run and summarizes them, so runs of different solver configurations
+ * can be compared.
+ * <p>
+ * The per-game results are written as CSV and the summary as JSON: win rate per tile threshold (the share of
+ * games reaching at least that tile), score percentiles, mean search latency per move and throughput. Both
+ * files are named after -DstatsOutput (default "statistics"), and -DstatsLabel names the configuration in the
+ * JSON. Results may be added from several threads.
+ */
+public class StatisticsReport {
+
+    public static String OUTPUT = System.getProperty("statsOutput", "statistics");
+    public static String LABEL = System.getProperty("statsLabel", "expectimax");
+
+    private static final int[] TILE_THRESHOLDS = {256, 512, 1024, 2048, 4096, 8192, 16384, 32768};
+    private static final double[] PERCENTILES = {0.1, 0.25, 0.5, 0.75, 0.9};
+
+    private static Logger log = Logger.getLogger(StatisticsReport.class);
+
+    private final String label;
+    private final List<GameResult> results = new ArrayList<>();
+    private final long start = System.currentTimeMillis();
+    private long end;
+
+    public StatisticsReport(String label) {
+        this.label = label;
+    }
+
+    public synchronized void add(GameResult result) {
+        results.add(result);
+    }
+
+    /**
+     * Marks the end of the run, the wall time of the run is used for the throughput
+     */
+    public synchronized void finish() {
+        end = System.currentTimeMillis();
+    }
+
+    public synchronized List<GameResult> getResults() {
+        List<GameResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingInt(GameResult::getGameId));
+        return sorted;
+    }
+
+    /**
+     * Returns the share of games that reached at least the given tile
+     */
+    public synchronized double getWinRate(int tile) {
+        if (results.isEmpty()) {
+            return 0.0;
+        }
+        long wins = results.stream().filter(r -> r.getMaxTile() >= tile).count();
+        return (double) wins / results.size();
+    }
+
+    /**
+     * Returns a score percentile, by the nearest rank method
+     * @param percentile The percentile, between 0 and 1
+     */
+    public synchronized int getScorePercentile(double percentile) {
+        if (results.isEmpty()) {
+            return 0;
+        }
+        int[] scores = results.stream().mapToInt(GameResult::getScore).sorted().toArray();
+        int rank = (int) Math.ceil(percentile * scores.length);
+        return scores[Math.max(rank - 1, 0)];
+    }
+
+    public synchronized double getMeanScore() {
+        return results.stream().mapToInt(GameResult::getScore).average().orElse(0.0);
+    }
+
+    public synchronized int getMaxScore() {
+        return results.stream().mapToInt(GameResult::getScore).max().orElse(0);
+    }
+
+    /**
+     * Returns the mean search latency per move over all games, in milliseconds
+     */
+    public synchronized double getMeanSearchMillis() {
+        long searches = results.stream().mapToLong(GameResult::getSearches).sum();
+        long nanos = results.stream().mapToLong(GameResult::getSearchNanos).sum();
+        return searches == 0 ? 0.0 : nanos / 1e6 / searches;
+    }
+
+    public synchronized long getTotalMoves() {
+        return results.stream().mapToLong(GameResult::getMoves).sum();
+    }
+
+    /**
+     * Returns the wall time of the run in seconds, up to now if the run is not finished
+     */
+    public synchronized double getElapsedSeconds() {
+        return ((end == 0 ? System.currentTimeMillis() : end) - start) / 1000.0;
+    }
+
+    public synchronized double getMovesPerSecond() {
+        double seconds = getElapsedSeconds();
+        return seconds == 0 ? 0.0 : getTotalMoves() / seconds;
+    }
+
+    public synchronized double getGamesPerHour() {
+        double seconds = getElapsedSeconds();
+        return seconds == 0 ? 0.0 : results.size() / (seconds / 3600.0);
+    }
+
+    /**
+     * Writes one CSV line per game
+     */
+    public synchronized void writeCsv(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("game,score,maxTile,moves,durationMillis,movesPerSecond,searches,meanSearchMillis");
+            for (GameResult result : getResults()) {
+                out.println(String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%.2f,%d,%.3f", result.getGameId(), result.getScore(),
+                        result.getMaxTile(), result.getMoves(), result.getDurationMillis(), result.getMovesPerSecond(),
+                        result.getSearches(), result.getMeanSearchMillis()));
+            }
+        }
+    }
+
+    /**
+     * Writes the summary as a JSON object
+     */
+    public synchronized void writeJson(File file) throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            out.write(toJson());
+            out.write("\n");
+        }
+    }
+
+    /**
+     * Writes the CSV and the JSON next to each other, named after the given prefix
+     */
+    public void write(String prefix) {
+        try {
+            writeCsv(new File(prefix + ".csv"));
+            writeJson(new File(prefix + ".json"));
+            log.info("Wrote statistics to " + prefix + ".csv and " + prefix + ".json");
+        } catch (IOException e) {
+            log.error("Could not write statistics: " + e.getMessage());
+        }
+    }
+
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"label\": \"").append(label.replace("\\", "\\\\").replace("\"", "\\\"")).append("\",\n");
+        json.append("  \"games\": ").append(results.size()).append(",\n");
+        json.append("  \"winRate\": {");
+        for (int i = 0; i < TILE_THRESHOLDS.length; i++) {
+            json.append(i == 0 ? "" : ",").append(" \"").append(TILE_THRESHOLDS[i]).append("\": ")
+                    .append(format(getWinRate(TILE_THRESHOLDS[i])));
+        }
+        json.append(" },\n");
+        json.append("  \"score\": {");
+        for (double percentile : PERCENTILES) {
+            json.append(" \"p").append((int) (percentile * 100)).append("\": ").append(getScorePercentile(percentile)).append(",");
+        }
+        json.append(" \"mean\": ").append(format(getMeanScore())).append(", \"max\": ").append(getMaxScore()).append(" },\n");
+        json.append("  \"meanSearchMillis\": ").append(format(getMeanSearchMillis())).append(",\n");
+        json.append("  \"moves\": ").append(getTotalMoves()).append(",\n");
+        json.append("  \"elapsedSeconds\": ").append(format(getElapsedSeconds())).append(",\n");
+        json.append("  \"movesPerSecond\": ").append(format(getMovesPerSecond())).append(",\n");
+        json.append("  \"gamesPerHour\": ").append(format(getGamesPerHour())).append("\n");
+        json.append("}");
+        return json.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder summary = new StringBuilder("StatisticsReport{label=" + label + ", games=" + results.size());
+        for (int tile : Arrays.copyOfRange(TILE_THRESHOLDS, 1, 5)) {
+            summary.append(", ").append(tile).append("=").append(String.format("%.1f", 100 * getWinRate(tile))).append("%");
+        }
+        summary.append(", medianScore=").append(getScorePercentile(0.5))
+                .append(", meanSearchMillis=").append(String.format("%.2f", getMeanSearchMillis()))
+                .append(", movesPerSecond=").append(String.format("%.1f", getMovesPerSecond())).append("}");
+        return summary.toString();
+    }
+}
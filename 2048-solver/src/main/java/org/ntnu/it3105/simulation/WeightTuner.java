@@ -0,0 +1,335 @@
+package org.ntnu.it3105.simulation;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.ntnu.it3105.ai.Expectimax;
+import org.ntnu.it3105.ai.HeuristicEvaluator;
+import org.ntnu.it3105.ai.TranspositionTable;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
+import org.ntnu.it3105.game.SpawnSource;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.*;
+
+import static org.ntnu.it3105.ai.Expectimax.TRANSPOSITION_TABLE_POLICY;
+
+/**
+ * Tunes the HeuristicEvaluator weights by self-play, with a separable CMA-ES: the step size is adapted by
+ * cumulative step-size adaptation and every weight has its own variance, but weights are not correlated.
+ * <p>
+ * Every generation samples tunePopulation weight sets around the current mean, and each set plays tuneGames
+ * games at the fixed depth tuneDepth. The fitness is the mean score. All candidates of a generation play the
+ * same seeded games, so they are compared on equal spawns, and every generation uses new seeds. The games of
+ * all candidates run concurrently in one fork/join pool of tuneThreads threads, each game with its own solver
+ * and a small transposition table, as entries are only valid for one set of weights.
+ * <p>
+ * The weights are searched in units of SCALES, since the terms differ by orders of magnitude. The state of
+ * the optimizer is written to tuneCheckpoint after every generation and picked up again on the next start,
+ * and the current mean is written to tuneOutput, a weights file the solver loads with -Dweights=file.
+ */
+public class WeightTuner {
+
+    public static int GENERATIONS = Integer.parseInt(System.getProperty("tuneGenerations", "40"));
+    public static int POPULATION = Integer.parseInt(System.getProperty("tunePopulation", "12"));
+    public static int GAMES = Integer.parseInt(System.getProperty("tuneGames", "8"));
+    public static int DEPTH = Integer.parseInt(System.getProperty("tuneDepth", "2"));
+    public static int THREADS = Integer.parseInt(System.getProperty("tuneThreads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+    public static double INITIAL_SIGMA = Double.parseDouble(System.getProperty("tuneSigma", "0.5"));
+    public static long SEED = Long.parseLong(System.getProperty("tuneSeed", "2048"));
+    public static String CHECKPOINT = System.getProperty("tuneCheckpoint", "tuner_checkpoint.properties");
+    public static String OUTPUT = System.getProperty("tuneOutput", "weights.properties");
+
+    // The size of one search unit per weight, in the order of HeuristicEvaluator.WEIGHT_NAMES
+    private static final double[] SCALES = {1.0, 1.0, 1.0, 1.0, 1.0, 0.1, 0.1, 1e-5, 1e-5};
+
+    // The weights Expectimax uses by default, the starting mean of a new run
+    private static final double[] DEFAULT_WEIGHTS = {0.0, 0.0, 1.3, 1.0, 0.0, 0.0, 0.0, 0.0, 0.0};
+
+    private static final int TABLE_SIZE_BITS = 16;
+
+    private static Logger log = Logger.getLogger(WeightTuner.class);
+
+    private final int n = SCALES.length;
+    private final int lambda;
+    private final int mu;
+    private final double[] recombinationWeights;
+    private final double muEff;
+    private final double cSigma;
+    private final double dSigma;
+    private final double cMu;
+    private final double chiN;
+
+    // Optimizer state, in search units, saved by the checkpoint
+    private int generation = 0;
+    private double sigma = INITIAL_SIGMA;
+    private double[] mean = new double[n];
+    private double[] variance = new double[n];
+    private double[] sigmaPath = new double[n];
+    private double bestFitness = 0.0;
+    private double[] bestWeights = DEFAULT_WEIGHTS.clone();
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param lambda The number of weight sets sampled per generation
+     * @param threads The number of threads playing the games of a generation
+     */
+    public WeightTuner(int lambda, int threads) {
+        this.lambda = Math.max(lambda, 4);
+        this.mu = this.lambda / 2;
+
+        // Standard CMA-ES parameters, see Hansen, The CMA Evolution Strategy: A Tutorial
+        recombinationWeights = new double[mu];
+        double sum = 0.0;
+        for (int i = 0; i < mu; i++) {
+            recombinationWeights[i] = Math.log(mu + 0.5) - Math.log(i + 1);
+            sum += recombinationWeights[i];
+        }
+        double sumOfSquares = 0.0;
+        for (int i = 0; i < mu; i++) {
+            recombinationWeights[i] /= sum;
+            sumOfSquares += recombinationWeights[i] * recombinationWeights[i];
+        }
+        muEff = 1.0 / sumOfSquares;
+        cSigma = (muEff + 2) / (n + muEff + 5);
+        dSigma = 1 + 2 * Math.max(0, Math.sqrt((muEff - 1) / (n + 1)) - 1) + cSigma;
+        // Rank-mu learning rate, raised by (n + 2) / 3 as only the diagonal is learned (Ros and Hansen, 2008)
+        cMu = Math.min(1.0, (n + 2) / 3.0 * 2 * (muEff - 2 + 1 / muEff) / ((n + 2) * (n + 2) + muEff));
+        chiN = Math.sqrt(n) * (1 - 1.0 / (4 * n) + 1.0 / (21 * n * n));
+
+        for (int i = 0; i < n; i++) {
+            mean[i] = DEFAULT_WEIGHTS[i] / SCALES[i];
+            variance[i] = 1.0;
+        }
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Runs generations until the given total, writing the checkpoint and the weights after each one
+     * @param generations The generation to stop at, counting the generations of a resumed run
+     * @param games The number of games every candidate plays per generation
+     * @param depth The fixed search depth of the games
+     */
+    public void run(int generations, int games, int depth, File checkpoint, File output) throws IOException {
+        while (generation < generations) {
+            long start = System.currentTimeMillis();
+            Random random = new Random(SEED * 31 + generation);
+
+            double[][] z = new double[lambda][n];
+            double[][] y = new double[lambda][n];
+            double[][] candidates = new double[lambda][];
+            for (int k = 0; k < lambda; k++) {
+                double[] x = new double[n];
+                for (int i = 0; i < n; i++) {
+                    z[k][i] = random.nextGaussian();
+                    y[k][i] = Math.sqrt(variance[i]) * z[k][i];
+                    x[i] = mean[i] + sigma * y[k][i];
+                }
+                candidates[k] = toWeights(x);
+            }
+
+            double[] fitness = evaluate(candidates, games, depth, (long) generation * games);
+            Integer[] ranking = new Integer[lambda];
+            for (int k = 0; k < lambda; k++) {
+                ranking[k] = k;
+            }
+            Arrays.sort(ranking, (a, b) -> Double.compare(fitness[b], fitness[a]));
+            update(z, y, ranking);
+
+            int best = ranking[0];
+            if (fitness[best] > bestFitness) {
+                bestFitness = fitness[best];
+                bestWeights = candidates[best].clone();
+            }
+            generation++;
+
+            log.info(String.format(Locale.ROOT, "Generation %d: best %.0f, median %.0f, sigma %.3f, %d s, mean %s",
+                    generation, fitness[best], fitness[ranking[lambda / 2]], sigma,
+                    (System.currentTimeMillis() - start) / 1000, HeuristicEvaluator.fromWeights(toWeights(mean))));
+
+            HeuristicEvaluator.fromWeights(toWeights(mean)).store(output, "Tuned by WeightTuner, generation " + generation
+                    + ", best sampled mean score " + String.format(Locale.ROOT, "%.0f", bestFitness));
+            saveCheckpoint(checkpoint);
+        }
+        log.info("Best sampled weights, mean score " + String.format(Locale.ROOT, "%.0f", bestFitness) + ": "
+                + HeuristicEvaluator.fromWeights(bestWeights));
+    }
+
+    /**
+     * Moves the mean towards the best half and adapts the step size and the variances
+     */
+    private void update(double[][] z, double[][] y, Integer[] ranking) {
+        double[] zMean = new double[n];
+        double[] yMean = new double[n];
+        for (int j = 0; j < mu; j++) {
+            int k = ranking[j];
+            for (int i = 0; i < n; i++) {
+                zMean[i] += recombinationWeights[j] * z[k][i];
+                yMean[i] += recombinationWeights[j] * y[k][i];
+            }
+        }
+
+        double pathLength = 0.0;
+        for (int i = 0; i < n; i++) {
+            mean[i] += sigma * yMean[i];
+            sigmaPath[i] = (1 - cSigma) * sigmaPath[i] + Math.sqrt(cSigma * (2 - cSigma) * muEff) * zMean[i];
+            pathLength += sigmaPath[i] * sigmaPath[i];
+        }
+        sigma *= Math.exp((cSigma / dSigma) * (Math.sqrt(pathLength) / chiN - 1));
+
+        for (int i = 0; i < n; i++) {
+            double rankMu = 0.0;
+            for (int j = 0; j < mu; j++) {
+                rankMu += recombinationWeights[j] * y[ranking[j]][i] * y[ranking[j]][i];
+            }
+            variance[i] = (1 - cMu) * variance[i] + cMu * rankMu;
+        }
+    }
+
+    /**
+     * Plays the games of all candidates concurrently
+     * @param candidates The weight sets
+     * @param games The number of games per candidate
+     * @param firstSeed The seed of the first game, shared by all candidates
+     * @return The mean score of every candidate
+     */
+    private double[] evaluate(double[][] candidates, int games, int depth, long firstSeed) {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (double[] candidate : candidates) {
+            // Built once per candidate, evaluating is read only and shared by its games
+            HeuristicEvaluator evaluator = HeuristicEvaluator.fromWeights(candidate);
+            for (int game = 0; game < games; game++) {
+                long seed = firstSeed + game;
+                tasks.add(() -> playGame(evaluator, depth, seed));
+            }
+        }
+
+        double[] fitness = new double[candidates.length];
+        try {
+            List<Future<Integer>> scores = pool.invokeAll(tasks);
+            for (int task = 0; task < scores.size(); task++) {
+                fitness[task / games] += scores.get(task).get() / (double) games;
+            }
+        } catch (InterruptedException e) {
+            log.error("Interrupted while evaluating weights!");
+        } catch (ExecutionException e) {
+            log.error("Caught execution exception while evaluating weights: " + e.getMessage());
+        }
+        return fitness;
+    }
+
+    /**
+     * Plays one seeded game to the end, or until the solver picks a move that does not change the board
+     * @return The final score
+     */
+    private int playGame(HeuristicEvaluator evaluator, int depth, long seed) {
+        TranspositionTable table = new TranspositionTable(TABLE_SIZE_BITS, TRANSPOSITION_TABLE_POLICY);
+        Expectimax solver = new Expectimax(null, depth, pool, table, evaluator);
+        solver.setSeed(seed);
+        Board board = new Board(SpawnSource.seeded(seed));
+        board.initializeNewGame();
+        while (!board.hasWon() && board.canMove()) {
+            table.newSearch();
+            if (!board.doMove(solver.getNextMove(BitBoard.fromArray(board.getBoard()), depth))) {
+                // No move scored above 0, and the search fell back on a move that does not change the board.
+                // It may keep doing so for ever, so the game ends with the score reached so far.
+                break;
+            }
+        }
+        solver.shutdown();
+        return board.getCurrentScore();
+    }
+
+    private double[] toWeights(double[] x) {
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = x[i] * SCALES[i];
+        }
+        return weights;
+    }
+
+    /**
+     * Writes the optimizer state to a temporary file and moves it in place, so a crash never leaves half a checkpoint
+     */
+    private void saveCheckpoint(File checkpoint) throws IOException {
+        Properties state = new Properties();
+        state.setProperty("generation", String.valueOf(generation));
+        state.setProperty("sigma", Double.toString(sigma));
+        state.setProperty("bestFitness", Double.toString(bestFitness));
+        for (int i = 0; i < n; i++) {
+            String name = HeuristicEvaluator.WEIGHT_NAMES[i];
+            state.setProperty("mean." + name, Double.toString(mean[i]));
+            state.setProperty("variance." + name, Double.toString(variance[i]));
+            state.setProperty("path." + name, Double.toString(sigmaPath[i]));
+            state.setProperty("best." + name, Double.toString(bestWeights[i]));
+        }
+
+        File temporary = new File(checkpoint.getPath() + ".tmp");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(temporary), StandardCharsets.UTF_8)) {
+            state.store(out, "WeightTuner checkpoint, population " + lambda);
+        }
+        Files.move(temporary.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores the optimizer state of an earlier run
+     */
+    private void loadCheckpoint(File checkpoint) throws IOException {
+        Properties state = new Properties();
+        try (Reader in = new InputStreamReader(new FileInputStream(checkpoint), StandardCharsets.UTF_8)) {
+            state.load(in);
+        }
+        generation = Integer.parseInt(state.getProperty("generation"));
+        sigma = Double.parseDouble(state.getProperty("sigma"));
+        bestFitness = Double.parseDouble(state.getProperty("bestFitness"));
+        for (int i = 0; i < n; i++) {
+            String name = HeuristicEvaluator.WEIGHT_NAMES[i];
+            mean[i] = Double.parseDouble(state.getProperty("mean." + name));
+            variance[i] = Double.parseDouble(state.getProperty("variance." + name));
+            sigmaPath[i] = Double.parseDouble(state.getProperty("path." + name));
+            bestWeights[i] = Double.parseDouble(state.getProperty("best." + name));
+        }
+    }
+
+    /**
+     * Shuts down the pool playing the games
+     */
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            log.error("Interrupted while awaiting ForkJoinPool shutdown!");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        PropertyConfigurator.configure(WeightTuner.class.getClassLoader().getResource("config/log4j.properties"));
+        // Solvers and boards are created for every game, keep their logging quiet
+        Logger.getRootLogger().setLevel(Level.WARN);
+        log.setLevel(Level.INFO);
+        Expectimax.USE_JMX = false;
+
+        WeightTuner tuner = new WeightTuner(POPULATION, THREADS);
+        File checkpoint = new File(CHECKPOINT);
+        if (checkpoint.exists()) {
+            tuner.loadCheckpoint(checkpoint);
+            log.info("Resuming from " + checkpoint + " at generation " + tuner.generation);
+        }
+        log.info("Tuning " + POPULATION + " weight sets per generation, " + GAMES + " games each at depth " + DEPTH
+                + " on " + THREADS + " threads");
+        tuner.run(GENERATIONS, GAMES, DEPTH, checkpoint, new File(OUTPUT));
+        tuner.shutdown();
+    }
+}
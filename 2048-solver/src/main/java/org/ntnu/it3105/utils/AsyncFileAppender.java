@@ -0,0 +1,191 @@
+package org.ntnu.it3105.utils;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends records to a file from a background thread, keeping the file open between records.
+ * <p>
+ * Records go through a bounded queue. The writer thread flushes once flushRecords records are buffered, or
+ * once the oldest buffered record is flushInterval milliseconds old, so a record is never held back for long
+ * on a quiet game thread. shutdown() writes everything queued before it, flushes and closes the file.
+ */
+public class AsyncFileAppender {
+
+    /**
+     * What append does when the queue is full
+     */
+    public enum BackPressurePolicy {
+        // Wait until the writer has made room, no records are lost
+        BLOCK,
+        // Discard the record and count it, the caller never waits
+        DROP
+    }
+
+    /**
+     * Opens the file on the writer thread
+     */
+    interface WriterOpener {
+        Writer open() throws IOException;
+    }
+
+    // Queued by shutdown, the writer stops once it reaches it
+    private static final String END_OF_RECORDS = new String("END_OF_RECORDS");
+
+    private Logger log = Logger.getLogger(AsyncFileAppender.class);
+
+    private final File file;
+    private final BlockingQueue<String> queue;
+    private final int flushRecords;
+    private final long flushIntervalNanos;
+    private final BackPressurePolicy policy;
+    private final WriterOpener opener;
+    private final Thread writerThread;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * Creates the appender and starts its writer thread
+     * @param file The file to append to, created if missing
+     * @param capacity The number of records the queue holds
+     * @param flushRecords The number of buffered records that triggers a flush
+     * @param flushIntervalMillis The longest time a record stays buffered before a flush
+     * @param policy What to do when the queue is full
+     */
+    public AsyncFileAppender(File file, int capacity, int flushRecords, long flushIntervalMillis, BackPressurePolicy policy) {
+        this(file, capacity, flushRecords, flushIntervalMillis, policy, () -> new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file, true), Charset.defaultCharset()), 1 << 16));
+    }
+
+    /**
+     * Creates the appender with its own way of opening the file, which tests use to stall the writer
+     */
+    AsyncFileAppender(File file, int capacity, int flushRecords, long flushIntervalMillis, BackPressurePolicy policy,
+                      WriterOpener opener) {
+        this.file = file;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flushRecords = flushRecords;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.policy = policy;
+        this.opener = opener;
+        this.writerThread = new Thread(this::writeRecords, "appender-" + file.getName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues a record for writing
+     * @param record The text to append, including any line separator
+     * @return False if the record was dropped because the queue was full or the appender is shut down
+     */
+    public boolean append(String record) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        if (policy == BackPressurePolicy.DROP) {
+            if (!queue.offer(record)) {
+                dropped.increment();
+                return false;
+            }
+            return true;
+        }
+        try {
+            queue.put(record);
+            return true;
+        } catch (InterruptedException e) {
+            log.error("Interrupted while waiting for room in the " + file + " queue");
+            Thread.currentThread().interrupt();
+            dropped.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Writes all records queued so far, closes the file and stops the writer thread. Later appends are dropped.
+     */
+    public void shutdown() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(END_OF_RECORDS);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            log.error("Interrupted while flushing " + file);
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.sum() > 0) {
+            log.warn("Dropped " + dropped.sum() + " records for " + file);
+        }
+    }
+
+    /**
+     * The writer thread, writes and flushes records until shutdown
+     */
+    private void writeRecords() {
+        try (Writer out = opener.open()) {
+            int buffered = 0;
+            long oldestBuffered = 0L;
+            while (true) {
+                String record;
+                if (buffered == 0) {
+                    record = queue.take();
+                } else {
+                    long wait = flushIntervalNanos - (System.nanoTime() - oldestBuffered);
+                    record = queue.poll(Math.max(wait, 0L), TimeUnit.NANOSECONDS);
+                }
+
+                if (record == END_OF_RECORDS) {
+                    break;
+                }
+                if (record != null) {
+                    if (buffered == 0) {
+                        oldestBuffered = System.nanoTime();
+                    }
+                    out.write(record);
+                    written.increment();
+                    buffered++;
+                }
+                if (buffered > 0 && (buffered >= flushRecords || System.nanoTime() - oldestBuffered >= flushIntervalNanos)) {
+                    out.flush();
+                    buffered = 0;
+                }
+            }
+
+            // Records that raced with shutdown
+            String record;
+            while ((record = queue.poll()) != null) {
+                out.write(record);
+                written.increment();
+            }
+        } catch (IOException e) {
+            log.error("Could not write to " + file + ": " + e.getMessage());
+            closed = true;
+            queue.clear();
+        } catch (InterruptedException e) {
+            log.error("Writer thread for " + file + " interrupted, buffered records are flushed");
+        }
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+}
@@ -1,18 +1,49 @@
 package org.ntnu.it3105.utils;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.ntnu.it3105.data.GameRecordFormat;
+import org.ntnu.it3105.data.GameRecordReader;
+import org.ntnu.it3105.data.GameRecordWriter;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Board;
 
 import java.io.File;
 import java.io.IOException;
 
 /**
  * Created by hakloev on 15/11/2015.
+ * <p>
+ * Appends game data to game_data.txt. By default the records are written by a background AsyncFileAppender,
+ * which is flushed by shutdown() or, failing that, a JVM shutdown hook. With -DgameDataFormat=binary the
+ * samples of appendRecord go to game_data.bin in the GameRecordFormat instead, with the score and game id. The
+ * game ids of a run continue after the highest one already in the file, so appended runs don't share ids.
  */
 public class GameDataAppender {
 
+    public static boolean BINARY_FORMAT = System.getProperty("gameDataFormat", "text").equalsIgnoreCase("binary");
+    public static boolean ASYNC = Boolean.parseBoolean(System.getProperty("gameDataAsync", "true"));
+    public static int QUEUE_CAPACITY = Integer.parseInt(System.getProperty("gameDataQueueCapacity", "65536"));
+    public static int FLUSH_RECORDS = Integer.parseInt(System.getProperty("gameDataFlushRecords", "4096"));
+    public static long FLUSH_INTERVAL = Long.parseLong(System.getProperty("gameDataFlushInterval", "1000"));
+    public static AsyncFileAppender.BackPressurePolicy BACK_PRESSURE_POLICY =
+            AsyncFileAppender.BackPressurePolicy.valueOf(System.getProperty("gameDataBackPressure", "BLOCK"));
+
+    private static Logger log = Logger.getLogger(GameDataAppender.class);
+
     private static File file = new File("./game_data.txt");
+    private static File binaryFile = new File("./game_data.bin");
+    private static GameRecordWriter recordWriter;
+    private static int gameId = 0;
+    private static boolean gameIdsResumed = false;
+    private static volatile AsyncFileAppender appender;
+    private static boolean hookRegistered = false;
 
     public static void appendToFile(String msg) {
+        if (ASYNC) {
+            appender().append(msg);
+            return;
+        }
         try {
             // 3rd parameter boolean append = true
             FileUtils.writeStringToFile(file, msg, true);
@@ -21,5 +52,99 @@ public class GameDataAppender {
         }
     }
 
-}
+    /**
+     * Appends one training sample, the board before a move and the move made
+     * @param board The board before the move
+     * @param directionCode The direction code of the move
+     * @param score The score before the move, only stored in the binary format
+     */
+    public static void appendRecord(int[][] board, int directionCode, int score) {
+        if (BINARY_FORMAT) {
+            writeBinaryRecord(BitBoard.fromArray(board), directionCode, score);
+        } else {
+            appendToFile(Board.getFlattenedBoard(board) + directionCode + "\n");
+        }
+    }
+
+    /**
+     * Marks the end of a game, a "-" line in the text format and a new game id in the binary format
+     */
+    public static void endGame() {
+        if (BINARY_FORMAT) {
+            synchronized (GameDataAppender.class) {
+                gameId++;
+            }
+        } else {
+            appendToFile("-\n");
+        }
+    }
 
+    /**
+     * Writes all queued game data and closes the file. Appending again afterwards reopens it.
+     */
+    public static synchronized void shutdown() {
+        if (appender != null) {
+            appender.shutdown();
+            appender = null;
+        }
+        if (recordWriter != null) {
+            try {
+                recordWriter.close();
+            } catch (IOException e) {
+                log.error("Could not close " + binaryFile + ": " + e.getMessage());
+            }
+            recordWriter = null;
+        }
+    }
+
+    private static synchronized void writeBinaryRecord(long board, int directionCode, int score) {
+        try {
+            if (recordWriter == null) {
+                recordWriter = new GameRecordWriter(binaryFile, (short) (GameRecordFormat.FLAG_SCORE | GameRecordFormat.FLAG_GAME_ID));
+                registerShutdownHook();
+                if (!gameIdsResumed) {
+                    // Only once, the file reopened after shutdown ends with the game still in progress
+                    gameId += nextGameId(binaryFile);
+                    gameIdsResumed = true;
+                }
+            }
+            // Records are buffered in memory, the file is only written once the buffer fills
+            recordWriter.write(board, directionCode, score, gameId);
+        } catch (IOException e) {
+            log.error("Could not write to " + binaryFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the id following the highest one in a game record file, or 0 if it holds no records. Not just the
+     * last one, as files appended to by earlier versions restarted at 0 on every run.
+     */
+    private static int nextGameId(File file) throws IOException {
+        int[] maxGameId = {-1};
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            reader.forEach((index, board, direction, score, id) -> maxGameId[0] = Math.max(maxGameId[0], id));
+        }
+        return maxGameId[0] + 1;
+    }
+
+    private static AsyncFileAppender appender() {
+        AsyncFileAppender current = appender;
+        if (current == null) {
+            synchronized (GameDataAppender.class) {
+                if (appender == null) {
+                    appender = new AsyncFileAppender(file, QUEUE_CAPACITY, FLUSH_RECORDS, FLUSH_INTERVAL, BACK_PRESSURE_POLICY);
+                    registerShutdownHook();
+                }
+                current = appender;
+            }
+        }
+        return current;
+    }
+
+    private static void registerShutdownHook() {
+        if (!hookRegistered) {
+            Runtime.getRuntime().addShutdownHook(new Thread(GameDataAppender::shutdown, "game-data-flush"));
+            hookRegistered = true;
+        }
+    }
+}
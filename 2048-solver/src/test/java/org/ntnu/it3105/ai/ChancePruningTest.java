@@ -0,0 +1,86 @@
+package org.ntnu.it3105.ai;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.ntnu.it3105.benchmark.BoardCorpus;
+import org.ntnu.it3105.game.Direction;
+
+/**
+ * The Star1 chance node pruning must search fewer nodes and pick the same moves
+ */
+public class ChancePruningTest
+    extends TestCase
+{
+    public ChancePruningTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ChancePruningTest.class );
+    }
+
+    private static final Evaluator EVALUATOR = new HeuristicEvaluator(0, 1.2, 1.3, 1.0, 0);
+
+    public void testSameMovesOnCorpus()
+    {
+        boolean useTranspositionTable = Expectimax.USE_TRANSPOSITION_TABLE;
+        Expectimax.USE_TRANSPOSITION_TABLE = false;
+        Expectimax solver = new Expectimax(null, 4, null, null, EVALUATOR);
+        Expectimax.USE_TRANSPOSITION_TABLE = useTranspositionTable;
+        try {
+            for (long board : BoardCorpus.all()) {
+                solver.setChancePruning(false);
+                solver.setSeed(1);
+                long nodesBefore = solver.getNodesSearched();
+                Direction expected = solver.getNextMove(board, 3);
+                long nodes = solver.getNodesSearched() - nodesBefore;
+
+                solver.setChancePruning(true);
+                solver.setSeed(1);
+                nodesBefore = solver.getNodesSearched();
+                assertEquals( expected, solver.getNextMove(board, 3) );
+                assertTrue( solver.getNodesSearched() - nodesBefore <= nodes );
+            }
+        } finally {
+            solver.shutdown();
+        }
+    }
+
+    public void testSameMovesOnCorpusWithTable()
+    {
+        TranspositionTable table = new TranspositionTable(Expectimax.TRANSPOSITION_TABLE_SIZE_BITS,
+                Expectimax.TRANSPOSITION_TABLE_POLICY);
+        Expectimax solver = new Expectimax(null, 4, null, table, EVALUATOR);
+        try {
+            for (int depth = 2; depth <= 4; depth++) {
+                for (long board : BoardCorpus.all()) {
+                    solver.setChancePruning(false);
+                    solver.setSeed(1);
+                    table.newSearch();
+                    Direction expected = solver.getNextMove(board, depth);
+
+                    // The table keeps the deeper entries of the unpruned search and of the boards before
+                    solver.setChancePruning(true);
+                    solver.setSeed(1);
+                    table.newSearch();
+                    assertEquals( expected, solver.getNextMove(board, depth) );
+                }
+            }
+        } finally {
+            solver.shutdown();
+        }
+    }
+
+    public void testExactDepthProbeSkipsDeeperEntries()
+    {
+        TranspositionTable table = new TranspositionTable(10, TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED);
+        table.newSearch();
+        table.store(0x21L, 5, false, 3.0);
+        assertEquals( 3.0, table.probe(0x21L, 3, false), 0.0 );
+        assertTrue( Double.isNaN(table.probe(0x21L, 3, false, true)) );
+        assertEquals( 3.0, table.probe(0x21L, 5, false, true), 0.0 );
+    }
+}
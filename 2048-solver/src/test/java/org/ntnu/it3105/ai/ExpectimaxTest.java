@@ -0,0 +1,62 @@
+package org.ntnu.it3105.ai;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Direction;
+
+/**
+ * Search behaviour of Expectimax not covered by the reports
+ */
+public class ExpectimaxTest
+    extends TestCase
+{
+    public ExpectimaxTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ExpectimaxTest.class );
+    }
+
+    public void testTimedOutSearchIsAbandoned()
+    {
+        // Far too deep to finish without a probability cutoff
+        long board = 0x0000000100000001L;
+        Expectimax solver = new Expectimax(null, 4, null, null, Expectimax.getDefaultEvaluator());
+        solver.setProbabilityThreshold(0.0);
+        solver.setSearchTimeout(100);
+        try {
+            long start = System.currentTimeMillis();
+            Direction direction = solver.getNextMove(board, 12);
+            // The directions stop at the next node they reach instead of running on
+            assertTrue( System.currentTimeMillis() - start < 5000 );
+            assertEquals( 1, solver.getMetrics().getTimeouts() );
+            assertTrue( BitBoard.move(board, direction) != board );
+
+            // The next search is not mistaken for the abandoned one
+            solver.setSearchTimeout(0);
+            assertNotNull( solver.getNextMove(board, 2) );
+            assertEquals( 1, solver.getMetrics().getTimeouts() );
+        } finally {
+            solver.shutdown();
+        }
+    }
+
+    public void testPonderedSearchIsNotAMove()
+    {
+        long board = 0x0000000100000001L;
+        Expectimax solver = new Expectimax(null, 2, null, null, Expectimax.getDefaultEvaluator());
+        try {
+            assertTrue( BitBoard.move(board, solver.ponderMove(board)) != board );
+            assertEquals( 0, solver.getMetrics().getMoves() );
+            solver.getNextMove(board);
+            assertEquals( 1, solver.getMetrics().getMoves() );
+        } finally {
+            solver.shutdown();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.ntnu.it3105.ai;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Direction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Checks the table-driven evaluator against the BitBoard heuristics it replaces
+ */
+public class HeuristicEvaluatorTest
+    extends TestCase
+{
+    private static final int SAMPLES = 20000;
+
+    public HeuristicEvaluatorTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( HeuristicEvaluatorTest.class );
+    }
+
+    private static long randomBoard(Random random)
+    {
+        long board = 0L;
+        for (int cell = 0; cell < 16; cell++) {
+            if (random.nextInt(3) != 0) {
+                board |= (long) (1 + random.nextInt(12)) << (cell << 2);
+            }
+        }
+        return board;
+    }
+
+    public void testOriginalTermsMatchBitBoard()
+    {
+        Random random = new Random(42);
+        double[] w = {0.7, 1.2, 1.3, 1.0, 0.5};
+        HeuristicEvaluator evaluator = new HeuristicEvaluator(w[0], w[1], w[2], w[3], w[4]);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            long board = randomBoard(random);
+            double expected = w[0] * BitBoard.getSnakeValue(board)
+                    + w[1] * BitBoard.getGradientValue(board)
+                    + w[2] * BitBoard.highestInCorner(board)
+                    + w[3] * Math.log(BitBoard.getFreeCellCount(board))
+                    + w[4] * Math.log(BitBoard.getNumPossibleMerges(board));
+            assertEquals( expected, evaluator.evaluate(board), 1e-9 );
+        }
+    }
+
+    public void testEmptyCellsCountedForRowsAndColumns()
+    {
+        Random random = new Random(42);
+        HeuristicEvaluator evaluator = new HeuristicEvaluator(0, 0, 0, 0, 0, 1.0, 0, 0, 0);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            long board = randomBoard(random);
+            assertEquals( 2.0 * BitBoard.getFreeCellCount(board), evaluator.evaluate(board), 1e-9 );
+        }
+    }
+
+    public void testMonotonicRowsAreNotPenalized()
+    {
+        HeuristicEvaluator evaluator = new HeuristicEvaluator(0, 0, 0, 0, 0, 0, 0, 1.0, 0);
+        // Rows 1,2,3,4 and columns 1,1,1,1 ... are sorted in one direction
+        long sorted = 0x4321432143214321L;
+        assertEquals( 0.0, evaluator.evaluate(sorted), 1e-9 );
+        assertTrue( evaluator.evaluate(0x1413141314131413L) < 0.0 );
+    }
+
+    public void testUpperBoundHoldsAlongRandomGames()
+    {
+        Random random = new Random(42);
+        HeuristicEvaluator[] evaluators = {
+                new HeuristicEvaluator(0.7, 1.2, 1.3, 1.0, 0.5),
+                new HeuristicEvaluator(0, 0, 0, 0, 0, 0.3, 0.7, -4e-5, -1e-5)};
+        Direction[] directions = Direction.values();
+
+        for (HeuristicEvaluator evaluator : evaluators) {
+            for (int i = 0; i < 2000; i++) {
+                long start = randomBoard(random) | 1L;
+                long board = start;
+                for (int moves = 0; moves <= 4; moves++) {
+                    assertTrue( evaluator.evaluate(board) <= evaluator.getUpperBound(start, moves) );
+                    long moved = BitBoard.move(board, directions[random.nextInt(4)]);
+                    if (moved == board) {
+                        break;
+                    }
+                    // Spawn a 4 on the first empty cell
+                    int cell = Long.numberOfTrailingZeros(~moved & ~(moved >>> 1) & ~(moved >>> 2) & ~(moved >>> 3)
+                            & 0x1111111111111111L) >>> 2;
+                    board = moved | (2L << (cell << 2));
+                }
+            }
+        }
+    }
+
+    public void testStoredWeightsLoadBack() throws IOException
+    {
+        double[] weights = {0.1, -0.2, 1.3, 1.0 / 3, 0.0, 0.05, -0.07, 3.9e-6, -8.2e-6};
+        File file = File.createTempFile("weights", ".properties");
+        try {
+            HeuristicEvaluator.fromWeights(weights).store(file, "test");
+            HeuristicEvaluator loaded = HeuristicEvaluator.load(file);
+            for (int i = 0; i < weights.length; i++) {
+                assertEquals( weights[i], loaded.getWeights()[i], 0.0 );
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.ntnu.it3105.ai;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.ntnu.it3105.game.BitBoard;
+import org.ntnu.it3105.game.Direction;
+
+/**
+ * Moves picked by the playout solver
+ */
+public class MonteCarloSolverTest
+    extends TestCase
+{
+    public MonteCarloSolverTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( MonteCarloSolverTest.class );
+    }
+
+    public void testOnlyMoveIsPicked()
+    {
+        // Rows 1,2,3,4 / 2,3,4,1 / 3,4,1,2 / 4,1,2,0 (exponents) only move right or down
+        long board = 0x0214214314324321L;
+        MonteCarloSolver solver = new MonteCarloSolver(null, 50, 20, MonteCarloSolver.Policy.RANDOM, 2);
+        try {
+            Direction direction = solver.getNextMove(board);
+            assertTrue( BitBoard.move(board, direction) != board );
+        } finally {
+            solver.shutdown();
+        }
+    }
+
+    public void testSeededSingleThreadIsReproducible()
+    {
+        long board = 0x0000000100121123L;
+        for (MonteCarloSolver.Policy policy : MonteCarloSolver.Policy.values()) {
+            MonteCarloSolver first = new MonteCarloSolver(null, 100, 30, policy, 1);
+            MonteCarloSolver second = new MonteCarloSolver(null, 100, 30, policy, 1);
+            try {
+                first.setSeed(7L);
+                second.setSeed(7L);
+                for (int move = 0; move < 5; move++) {
+                    assertEquals( first.getNextMove(board), second.getNextMove(board) );
+                }
+            } finally {
+                first.shutdown();
+                second.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.ntnu.it3105.ai;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.ntnu.it3105.game.Direction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores moves in a memory-mapped book, read back by the writer, by later readers and by concurrent readers
+ */
+public class OpeningBookTest
+    extends TestCase
+{
+    private static final Evaluator EVALUATOR = new HeuristicEvaluator(0, 0, 1.3, 1.0, 0);
+
+    private File file;
+
+    public OpeningBookTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( OpeningBookTest.class );
+    }
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        file = File.createTempFile("book", ".bin");
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        file.delete();
+    }
+
+    private static Direction moveOf(long board)
+    {
+        return Direction.values()[(int) (board % 4)];
+    }
+
+    public void testMovesReadBackAfterReopening() throws IOException
+    {
+        OpeningBook book = OpeningBook.create(file, 8, EVALUATOR);
+        assertTrue( book.put(0x11L, Direction.LEFT, 6) );
+        assertTrue( book.put(0x12L, Direction.UP, 6) );
+        // Only a deeper search replaces a move
+        assertFalse( book.put(0x11L, Direction.RIGHT, 4) );
+        assertTrue( book.put(0x12L, Direction.DOWN, 8) );
+        book.close();
+
+        OpeningBook reader = OpeningBook.open(file, false);
+        assertEquals( 2, reader.size() );
+        assertEquals( Direction.LEFT, reader.get(0x11L) );
+        assertEquals( Direction.DOWN, reader.get(0x12L) );
+        assertEquals( 8, reader.getDepth(0x12L) );
+        assertNull( reader.get(0x13L) );
+        assertTrue( reader.isSearchedWith(EVALUATOR) );
+        assertFalse( reader.isSearchedWith(new HeuristicEvaluator(1, 0, 1.3, 1.0, 0)) );
+    }
+
+    public void testFullBookRejectsNewBoards() throws IOException
+    {
+        OpeningBook book = OpeningBook.create(file, 4, EVALUATOR);
+        for (long board = 1; board <= 12; board++) {
+            assertTrue( book.put(board, moveOf(board), 6) );
+        }
+        assertFalse( book.put(13L, Direction.UP, 6) );
+        assertEquals( Direction.UP, book.get(4L) );
+    }
+
+    public void testReadersSeeCompleteEntriesWhileWriting() throws Exception
+    {
+        final int boards = 2000;
+        final OpeningBook book = OpeningBook.create(file, 12, EVALUATOR);
+        // Opened before anything is written, like a solver started while the builder runs
+        final OpeningBook otherReader = OpeningBook.open(file, false);
+        final AtomicInteger wrong = new AtomicInteger();
+
+        Thread writer = new Thread(() -> {
+            for (long board = 1; board <= boards; board++) {
+                book.put(board * 0x1111L, moveOf(board * 0x1111L), 6);
+            }
+        });
+        Thread[] readers = new Thread[2];
+        for (int r = 0; r < readers.length; r++) {
+            final OpeningBook reading = r == 0 ? book : otherReader;
+            readers[r] = new Thread(() -> {
+                for (int pass = 0; pass < 20; pass++) {
+                    for (long board = 1; board <= boards; board++) {
+                        Direction direction = reading.get(board * 0x1111L);
+                        if (direction != null && direction != moveOf(board * 0x1111L)) {
+                            wrong.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertEquals( 0, wrong.get() );
+        assertEquals( boards, book.size() );
+        for (long board = 1; board <= boards; board++) {
+            assertEquals( moveOf(board * 0x1111L), otherReader.get(board * 0x1111L) );
+        }
+    }
+}
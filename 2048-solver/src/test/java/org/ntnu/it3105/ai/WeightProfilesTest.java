@@ -0,0 +1,52 @@
+package org.ntnu.it3105.ai;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Reading named weight profiles
+ */
+public class WeightProfilesTest
+    extends TestCase
+{
+    public WeightProfilesTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( WeightProfilesTest.class );
+    }
+
+    public void testProfilesAreReadByName() throws IOException
+    {
+        Map<String, HeuristicEvaluator> profiles = WeightProfiles.read(new StringReader(
+                "a.highCorner=1.3\na.freeCells=1.0\nb.snake=0.5\nb.monotonicity=-2e-5\n"));
+        assertEquals( Arrays.asList("a", "b"), Arrays.asList(profiles.keySet().toArray()) );
+        assertTrue( Arrays.equals(new double[]{0, 0, 1.3, 1.0, 0, 0, 0, 0, 0}, profiles.get("a").getWeights()) );
+        assertTrue( Arrays.equals(new double[]{0.5, 0, 0, 0, 0, 0, 0, -2e-5, 0}, profiles.get("b").getWeights()) );
+        assertTrue( profiles.get("a").isSymmetric() );
+        assertFalse( profiles.get("b").isSymmetric() );
+    }
+
+    public void testUnknownWeightIsRejected()
+    {
+        try {
+            WeightProfiles.read(new StringReader("a.corner=1.3\n"));
+            fail( "Read a profile with an unknown weight" );
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testBuiltInDefaultMatchesOriginalWeights()
+    {
+        assertTrue( Arrays.equals(new double[]{0, 0, 1.3, 1.0, 0, 0, 0, 0, 0}, WeightProfiles.get("default").getWeights()) );
+    }
+}
@@ -0,0 +1,119 @@
+package org.ntnu.it3105.data;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.commons.io.FileUtils;
+import org.ntnu.it3105.game.BitBoard;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Round trips game records through the writer, the mapped reader and the text converter
+ */
+public class GameRecordTest
+    extends TestCase
+{
+    private File file;
+
+    public GameRecordTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( GameRecordTest.class );
+    }
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        file = File.createTempFile("records", ".bin");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        file.delete();
+    }
+
+    public void testRoundTripAcrossSegments() throws IOException
+    {
+        short flags = GameRecordFormat.FLAG_SCORE | GameRecordFormat.FLAG_GAME_ID;
+        Random random = new Random(42);
+        long[] boards = new long[10000];
+        try (GameRecordWriter writer = new GameRecordWriter(file, flags)) {
+            for (int i = 0; i < boards.length; i++) {
+                boards[i] = random.nextLong();
+                writer.write(boards[i], i % 4, i * 3, i / 100);
+            }
+        }
+        assertEquals( GameRecordFormat.HEADER_SIZE + 17L * boards.length, file.length() );
+
+        // Segments of 1000 bytes, so records are spread over many mappings
+        try (GameRecordReader reader = new GameRecordReader(file, 1000)) {
+            assertEquals( boards.length, reader.size() );
+            for (int i = 0; i < boards.length; i++) {
+                assertEquals( boards[i], reader.getBoard(i) );
+                assertEquals( i % 4, reader.getDirectionCode(i) );
+                assertEquals( i * 3, reader.getScore(i) );
+                assertEquals( i / 100, reader.getGameId(i) );
+            }
+            int[] count = new int[1];
+            reader.forEach((index, board, direction, score, gameId) -> {
+                assertEquals( count[0], index );
+                assertEquals( boards[count[0]++], board );
+            });
+            assertEquals( boards.length, count[0] );
+        }
+    }
+
+    public void testAppendRequiresSameFlags() throws IOException
+    {
+        try (GameRecordWriter writer = new GameRecordWriter(file, GameRecordFormat.FLAG_SCORE)) {
+            writer.write(1L, 0, 0, 0);
+        }
+        try (GameRecordWriter writer = new GameRecordWriter(file, GameRecordFormat.FLAG_SCORE)) {
+            writer.write(2L, 1, 0, 0);
+        }
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            assertEquals( 2, reader.size() );
+            assertEquals( 2L, reader.getBoard(1) );
+            assertEquals( 0, reader.getGameId(1) );
+        }
+        try {
+            new GameRecordWriter(file, GameRecordFormat.FLAG_GAME_ID);
+            fail( "Expected the flag mismatch to be rejected" );
+        } catch (IOException expected) {
+            // The file stores scores, not game ids
+        }
+    }
+
+    public void testConvertText() throws IOException
+    {
+        File text = File.createTempFile("game_data", ".txt");
+        try {
+            FileUtils.writeStringToFile(text, "2,0,2,8,2,8,16,256,2,16,8,64,4,2,8,32,2\n-\n0,0,0,0,0,0,0,0,0,0,0,0,0,0,2,4,3\n-\n",
+                    Charset.defaultCharset());
+            assertEquals( 2, GameDataConverter.convert(text, file) );
+        } finally {
+            text.delete();
+        }
+
+        try (GameRecordReader reader = new GameRecordReader(file)) {
+            assertEquals( 2, reader.size() );
+            assertEquals( 8, BitBoard.toValue(BitBoard.getCell(reader.getBoard(0), 0, 3)) );
+            assertEquals( 256, BitBoard.toValue(BitBoard.getCell(reader.getBoard(0), 1, 3)) );
+            assertEquals( 2, reader.getDirectionCode(0) );
+            assertEquals( 0, reader.getGameId(0) );
+            assertEquals( 4, BitBoard.toValue(BitBoard.getCell(reader.getBoard(1), 3, 3)) );
+            assertEquals( 3, reader.getDirectionCode(1) );
+            assertEquals( 1, reader.getGameId(1) );
+        }
+    }
+}
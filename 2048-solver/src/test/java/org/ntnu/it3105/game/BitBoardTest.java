@@ -0,0 +1,97 @@
+package org.ntnu.it3105.game;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.ntnu.it3105.precompute.Precomputer;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the packed board engine against the original int[][] implementation in Board
+ */
+public class BitBoardTest
+    extends TestCase
+{
+    private static final int SAMPLES = 20000;
+
+    public BitBoardTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( BitBoardTest.class );
+    }
+
+    /**
+     * Random board with tiles up to 4096, a third of the cells left empty
+     */
+    private static int[][] randomBoard(Random random)
+    {
+        int[][] board = new int[Board.BOARD_SIZE][Board.BOARD_SIZE];
+        for (int row = 0; row < Board.BOARD_SIZE; row++) {
+            for (int col = 0; col < Board.BOARD_SIZE; col++) {
+                board[row][col] = random.nextInt(3) == 0 ? 0 : 1 << (1 + random.nextInt(12));
+            }
+        }
+        return board;
+    }
+
+    public void testConversionRoundTrip()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            int[][] board = randomBoard(random);
+            assertTrue( Arrays.deepEquals(board, BitBoard.toArray(BitBoard.fromArray(board))) );
+        }
+    }
+
+    public void testMoveMatchesLookupTable()
+    {
+        Precomputer.compute();
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            int[][] board = randomBoard(random);
+            long packed = BitBoard.fromArray(board);
+            for (Direction direction : Direction.values()) {
+                Precomputer.MoveResult expected = Precomputer.get(board, direction);
+                assertTrue( Arrays.deepEquals(expected.res, BitBoard.toArray(BitBoard.move(packed, direction))) );
+                assertEquals( expected.score, BitBoard.getMoveScore(packed, direction) );
+            }
+        }
+    }
+
+    public void testRowTablesMatchSlide()
+    {
+        for (int row = 0; row < Precomputer.ROW_COUNT; row++) {
+            assertEquals( BitBoard.slideRowLeft(row), Precomputer.ROW_LEFT[row] );
+            assertEquals( BitBoard.rowLeftScore(row), Precomputer.SCORE_LEFT[row] );
+        }
+    }
+
+    public void testHeuristicsMatchBoard()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            int[][] board = randomBoard(random);
+            long packed = BitBoard.fromArray(board);
+            assertEquals( Board.getFreeCellCount(board), BitBoard.getFreeCellCount(packed) );
+            assertEquals( Board.getNumPossibleMerges(board), BitBoard.getNumPossibleMerges(packed) );
+            assertEquals( Board.isVictory(board), BitBoard.isVictory(packed) );
+            assertEquals( Board.rightmostNotFull(board), BitBoard.rightmostNotFull(packed) );
+            assertEquals( Board.highestInCorner(board), BitBoard.highestInCorner(packed), 1e-9 );
+            assertEquals( Board.getSnakeValue(board), BitBoard.getSnakeValue(packed), 1e-9 );
+            assertEquals( Board.getGradientValue(board), BitBoard.getGradientValue(packed), 1e-9 );
+        }
+    }
+
+    public void testVictory()
+    {
+        long packed = BitBoard.setCell(0L, 2, 1, BitBoard.toExponent(Board.TARGET_VALUE));
+        assertTrue( BitBoard.isVictory(packed) );
+        assertFalse( BitBoard.isVictory(BitBoard.setCell(0L, 2, 1, 11)) );
+    }
+}
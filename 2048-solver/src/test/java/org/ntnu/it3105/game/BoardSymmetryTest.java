@@ -0,0 +1,99 @@
+package org.ntnu.it3105.game;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Random;
+
+/**
+ * Checks the packed board symmetries and their direction remapping
+ */
+public class BoardSymmetryTest
+    extends TestCase
+{
+    private static final int SAMPLES = 5000;
+
+    public BoardSymmetryTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( BoardSymmetryTest.class );
+    }
+
+    private static long randomBoard(Random random)
+    {
+        long board = 0L;
+        for (int cell = 0; cell < 16; cell++) {
+            if (random.nextInt(3) != 0) {
+                board |= (long) (1 + random.nextInt(12)) << (cell << 2);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Cell of the original board that ends up in (row, col) of the transformed board
+     */
+    private static int sourceCell(long board, int symmetry, int row, int col)
+    {
+        switch (symmetry) {
+            case BoardSymmetry.ROTATE_CLOCKWISE: return BitBoard.getCell(board, 3 - col, row);
+            case BoardSymmetry.ROTATE_HALF: return BitBoard.getCell(board, 3 - row, 3 - col);
+            case BoardSymmetry.ROTATE_COUNTER_CLOCKWISE: return BitBoard.getCell(board, col, 3 - row);
+            case BoardSymmetry.FLIP_HORIZONTAL: return BitBoard.getCell(board, row, 3 - col);
+            case BoardSymmetry.FLIP_VERTICAL: return BitBoard.getCell(board, 3 - row, col);
+            case BoardSymmetry.TRANSPOSE: return BitBoard.getCell(board, col, row);
+            case BoardSymmetry.ANTI_TRANSPOSE: return BitBoard.getCell(board, 3 - col, 3 - row);
+            default: return BitBoard.getCell(board, row, col);
+        }
+    }
+
+    public void testApplyMatchesCellMapping()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            long board = randomBoard(random);
+            for (int symmetry = 0; symmetry < BoardSymmetry.COUNT; symmetry++) {
+                long transformed = BoardSymmetry.apply(board, symmetry);
+                for (int row = 0; row < 4; row++) {
+                    for (int col = 0; col < 4; col++) {
+                        assertEquals( sourceCell(board, symmetry, row, col), BitBoard.getCell(transformed, row, col) );
+                    }
+                }
+            }
+        }
+    }
+
+    public void testDirectionMapping()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            long board = randomBoard(random);
+            for (int symmetry = 0; symmetry < BoardSymmetry.COUNT; symmetry++) {
+                long transformed = BoardSymmetry.apply(board, symmetry);
+                for (Direction direction : Direction.values()) {
+                    Direction mapped = BoardSymmetry.mapDirection(direction, symmetry);
+                    assertEquals( BoardSymmetry.apply(BitBoard.move(board, direction), symmetry), BitBoard.move(transformed, mapped) );
+                    assertEquals( direction, BoardSymmetry.unmapDirection(mapped, symmetry) );
+                }
+            }
+        }
+    }
+
+    public void testCanonicalFormIsSharedBySymmetricBoards()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            long board = randomBoard(random);
+            long canonical = BoardSymmetry.canonicalize(board);
+            assertEquals( canonical, BoardSymmetry.apply(board, BoardSymmetry.canonicalSymmetry(board)) );
+            for (int symmetry = 0; symmetry < BoardSymmetry.COUNT; symmetry++) {
+                assertEquals( canonical, BoardSymmetry.canonicalize(BoardSymmetry.apply(board, symmetry)) );
+            }
+        }
+    }
+}
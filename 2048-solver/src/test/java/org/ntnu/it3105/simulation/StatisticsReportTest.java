@@ -0,0 +1,64 @@
+package org.ntnu.it3105.simulation;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Checks the summary figures of a statistics run
+ */
+public class StatisticsReportTest
+    extends TestCase
+{
+    public StatisticsReportTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( StatisticsReportTest.class );
+    }
+
+    private static StatisticsReport report()
+    {
+        StatisticsReport report = new StatisticsReport("test");
+        // Scores 1000 .. 10000, max tiles 256, 512, 1024 and 2048 in turn
+        for (int game = 1; game <= 10; game++) {
+            report.add(new GameResult(game, game * 1000, 256 << (game % 4), 100, 1000L, 120, 120 * 2000000L));
+        }
+        report.finish();
+        return report;
+    }
+
+    public void testWinRates()
+    {
+        StatisticsReport report = report();
+        assertEquals( 1.0, report.getWinRate(256), 1e-9 );
+        assertEquals( 0.5, report.getWinRate(1024), 1e-9 );
+        assertEquals( 0.2, report.getWinRate(2048), 1e-9 );
+        assertEquals( 0.0, report.getWinRate(4096), 1e-9 );
+    }
+
+    public void testScorePercentiles()
+    {
+        StatisticsReport report = report();
+        assertEquals( 1000, report.getScorePercentile(0.1) );
+        assertEquals( 5000, report.getScorePercentile(0.5) );
+        assertEquals( 9000, report.getScorePercentile(0.9) );
+        assertEquals( 10000, report.getMaxScore() );
+        assertEquals( 5500.0, report.getMeanScore(), 1e-9 );
+    }
+
+    public void testLatencyAndJson()
+    {
+        StatisticsReport report = report();
+        assertEquals( 2.0, report.getMeanSearchMillis(), 1e-9 );
+        assertEquals( 1000, report.getTotalMoves() );
+
+        String json = report.toJson();
+        assertTrue( json.contains("\"games\": 10") );
+        assertTrue( json.contains("\"2048\": 0.2000") );
+        assertTrue( json.contains("\"p50\": 5000") );
+    }
+}
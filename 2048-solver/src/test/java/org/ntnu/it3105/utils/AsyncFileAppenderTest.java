@@ -0,0 +1,114 @@
+package org.ntnu.it3105.utils;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Checks that the background appender writes every record, in order, by the time shutdown returns, and that
+ * it drops and counts the records that don't fit its queue under the DROP policy
+ */
+public class AsyncFileAppenderTest
+    extends TestCase
+{
+    private File file;
+
+    public AsyncFileAppenderTest(String testName)
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( AsyncFileAppenderTest.class );
+    }
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        file = File.createTempFile("appender", ".txt");
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        file.delete();
+    }
+
+    public void testWritesAllRecordsInOrder() throws IOException
+    {
+        // A small queue, so the game thread has to wait for the writer
+        AsyncFileAppender appender = new AsyncFileAppender(file, 16, 100, 1000L, AsyncFileAppender.BackPressurePolicy.BLOCK);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue( appender.append(i + "\n") );
+        }
+        appender.shutdown();
+
+        List<String> lines = FileUtils.readLines(file, Charset.defaultCharset());
+        assertEquals( 10000, lines.size() );
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals( String.valueOf(i), lines.get(i) );
+        }
+        assertEquals( 10000, appender.getWritten() );
+        assertEquals( 0, appender.getDropped() );
+    }
+
+    public void testFlushesOnInterval() throws Exception
+    {
+        AsyncFileAppender appender = new AsyncFileAppender(file, 16, 100, 10L, AsyncFileAppender.BackPressurePolicy.BLOCK);
+        appender.append("first\n");
+        Thread.sleep(500L);
+        assertEquals( "first\n", FileUtils.readFileToString(file, Charset.defaultCharset()) );
+        appender.shutdown();
+    }
+
+    public void testDropsAfterShutdown()
+    {
+        AsyncFileAppender appender = new AsyncFileAppender(file, 16, 100, 1000L, AsyncFileAppender.BackPressurePolicy.DROP);
+        appender.shutdown();
+        assertFalse( appender.append("late\n") );
+        assertEquals( 1, appender.getDropped() );
+    }
+
+    public void testDropsWhenQueueFullAndWriterStalled() throws IOException
+    {
+        // The writer waits for the latch before it takes any record off the queue
+        final CountDownLatch stall = new CountDownLatch(1);
+        AsyncFileAppender appender = new AsyncFileAppender(file, 4, 100, 1000L, AsyncFileAppender.BackPressurePolicy.DROP, () -> {
+            try {
+                stall.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return new FileWriter(file, true);
+        });
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (appender.append(i + "\n")) {
+                accepted++;
+            }
+        }
+        assertEquals( 4, accepted );
+        assertEquals( 6, appender.getDropped() );
+        assertEquals( 4, appender.getQueued() );
+
+        stall.countDown();
+        appender.shutdown();
+        List<String> lines = FileUtils.readLines(file, Charset.defaultCharset());
+        assertEquals( 4, lines.size() );
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals( String.valueOf(i), lines.get(i) );
+        }
+        assertEquals( 4, appender.getWritten() );
+        assertEquals( 6, appender.getDropped() );
+    }
+}